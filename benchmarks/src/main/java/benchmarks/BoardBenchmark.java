@@ -0,0 +1,110 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Board construction, FEN loading and validation, and playing and notating single moves, for positions of increasing
+ * complexity
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark
+{
+    @Param({"opening", "middlegame", "endgame"})
+    public String complexity;
+
+    private String fen; // The FEN of the position
+    private String san; // A legal move in the position
+    private Object board; // A Board loaded to the position
+    private Object move; // SAN, parsed on BOARD
+    private int code; // The packed form of MOVE
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        switch (complexity)
+        {
+            case "opening" -> {
+                fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+                san = "Nf3";
+            }
+            case "middlegame" -> {
+                // Kiwipete: both sides can castle, with pins, captures, and an en passant threat
+                fen = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+                san = "Bxa6";
+            }
+            case "endgame" -> {
+                fen = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+                san = "Rxf4+";
+            }
+            default -> throw new IllegalArgumentException(complexity);
+        }
+
+        board = (Object) Engine.NEW_BOARD.invokeExact();
+        Engine.START_FROM_FEN.invokeExact(board, (Object) fen);
+        move = (Object) Engine.NEW_MOVE_FROM_SAN.invokeExact((Object) san, board);
+        code = (int) Engine.GET_CODE.invokeExact(move);
+    }
+
+    @Benchmark
+    public Object newBoard() throws Throwable
+    {
+        return (Object) Engine.NEW_BOARD.invokeExact();
+    }
+
+    @Benchmark
+    public Object loadFromFen() throws Throwable
+    {
+        Engine.LOAD_FROM_FEN.invokeExact(board, (Object) fen);
+        return board;
+    }
+
+    @Benchmark
+    public boolean isValidFEN() throws Throwable
+    {
+        return (boolean) Engine.IS_VALID_FEN.invokeExact((Object) fen);
+    }
+
+    @Benchmark
+    public Object parseSAN() throws Throwable
+    {
+        return (Object) Engine.NEW_MOVE_FROM_SAN.invokeExact((Object) san, board);
+    }
+
+    /**
+     * Board.move() followed by undoMove(), so every invocation starts from the same position
+     */
+    @Benchmark
+    public Object move() throws Throwable
+    {
+        Engine.MOVE.invokeExact(board, move);
+        Engine.UNDO_MOVE.invokeExact(board);
+        return board;
+    }
+
+    /**
+     * Wraps the packed move in a fresh Move every time, since the SAN is cached once written
+     */
+    @Benchmark
+    public Object getSAN() throws Throwable
+    {
+        Object m = (Object) Engine.NEW_MOVE_FROM_CODE.invokeExact(code, board);
+        return (Object) Engine.GET_SAN.invokeExact(m);
+    }
+}
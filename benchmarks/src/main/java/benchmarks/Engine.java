@@ -0,0 +1,153 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * The engine classes live in the default package, which no class in a named package can refer to, and JMH will not
+ * generate benchmarks in the default package. So every engine call goes through a method handle looked up once here.
+ * The handles are static finals, which the JIT inlines through like a direct call.
+ *
+ * Every reference type in a handle is erased to Object and primitives are kept, so call sites can use invokeExact
+ * without boxing.
+ */
+final class Engine
+{
+    static final MethodHandle NEW_BOARD = constructor("Board");
+    static final MethodHandle LOAD_FROM_FEN = method("Board", "loadFromFen", String.class);
+    static final MethodHandle START_FROM_FEN = method("Board", "startFromFen", String.class);
+    static final MethodHandle MOVE = method("Board", "move", type("Move"));
+    static final MethodHandle UNDO_MOVE = method("Board", "undoMove");
+    static final MethodHandle LEGAL_MOVES = method("Board", "getLegalMoves", type("Square"));
+    static final MethodHandle GET_STATE = method("Board", "getState");
+    static final MethodHandle IS_VALID_FEN = method("FEN", "isValidFEN", String.class);
+
+    static final MethodHandle NEW_MOVE_FROM_SAN = constructor("Move", String.class, type("Board"));
+    static final MethodHandle NEW_MOVE_FROM_CODE = constructor("Move", int.class, type("Board"));
+    static final MethodHandle GET_CODE = method("Move", "getCode");
+    static final MethodHandle GET_SAN = method("Move", "getSAN");
+
+    static final MethodHandle GET_POSITION = method("Board", "getPosition");
+    static final MethodHandle NEW_TABLE = constructor("TranspositionTable", int.class);
+    static final MethodHandle CLEAR_TABLE = method("TranspositionTable", "clear");
+    static final MethodHandle NEW_PARALLEL_SEARCH = constructor("ParallelSearch", type("Position"), int.class, type("TranspositionTable"));
+    static final MethodHandle PARALLEL_SEARCH = method("ParallelSearch", "search", int.class, long.class, long.class);
+    static final MethodHandle GET_NODES = method("SearchResult", "getNodes");
+
+    static final MethodHandle CONVERT_PGN_TO_TREE = method("PGNManager", "convertPGNToTree", java.io.File.class);
+    static final MethodHandle MERGE_TREES = method("PGNManager", "mergeTrees", java.util.ArrayList.class);
+    static final MethodHandle CONVERT_TREE_TO_PGN = method("PGNManager", "convertTreeToPGN", type("MoveTreeNode"));
+
+    private Engine()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param name The name of a class in the default package
+     * @return The class
+     */
+    static Class<?> type(String name)
+    {
+        try
+        {
+            return Class.forName(name);
+        }
+        catch (ClassNotFoundException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param owner The name of a class in the default package
+     * @param params The parameter types of one of its constructors
+     * @return An erased handle to the constructor, whatever its access
+     */
+    private static MethodHandle constructor(String owner, Class<?>... params)
+    {
+        try
+        {
+            Constructor<?> c = type(owner).getDeclaredConstructor(params);
+            c.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflectConstructor(c));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param owner The name of a class in the default package
+     * @param name The name of one of its methods
+     * @param params The parameter types of the method
+     * @return An erased handle to the method, whatever its access. Instance methods take the receiver first.
+     */
+    private static MethodHandle method(String owner, String name, Class<?>... params)
+    {
+        try
+        {
+            Method m = type(owner).getDeclaredMethod(name, params);
+            m.setAccessible(true);
+            return erase(MethodHandles.lookup().unreflect(m));
+        }
+        catch (ReflectiveOperationException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param h A method handle
+     * @return H adapted so every reference type in its type is Object
+     */
+    private static MethodHandle erase(MethodHandle h)
+    {
+        MethodType t = h.type();
+        for (int i = 0; i < t.parameterCount(); i++)
+        {
+            if (!t.parameterType(i).isPrimitive())
+            {
+                t = t.changeParameterType(i, Object.class);
+            }
+        }
+        if (!t.returnType().isPrimitive())
+        {
+            t = t.changeReturnType(Object.class);
+        }
+        return h.asType(t);
+    }
+
+    /**
+     * Plays random legal moves on a fresh board from FEN, for building benchmark input
+     *
+     * @param fen The FEN from which to start
+     * @param plies The number of moves to play, fewer if the game ends first
+     * @param seed The seed of the random choices
+     * @return The SAN of every move played, in order
+     */
+    static List<String> randomGame(String fen, int plies, long seed) throws Throwable
+    {
+        java.util.Random r = new java.util.Random(seed);
+        Object b = (Object) NEW_BOARD.invokeExact();
+        START_FROM_FEN.invokeExact(b, (Object) fen);
+        List<String> ret = new java.util.ArrayList<>();
+        for (int i = 0; i < plies && ((Object) GET_STATE.invokeExact(b)).toString().equals("IN_PROGRESS"); i++)
+        {
+            List<?> moves = (List<?>) (Object) LEGAL_MOVES.invokeExact(b, (Object) null);
+            if (moves.isEmpty())
+            {
+                break;
+            }
+            Object m = moves.get(r.nextInt(moves.size()));
+            MOVE.invokeExact(b, m);
+            ret.add(m.toString());
+        }
+        return ret;
+    }
+}
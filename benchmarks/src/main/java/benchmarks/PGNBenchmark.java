@@ -0,0 +1,129 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading, merging, and writing move trees. The input is GAMES random games of PLIES plies from the starting position,
+ * each written to its own PGN file, plus one PGN of all of them merged into a single tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PGNBenchmark
+{
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final int PLIES = 24;
+
+    @Param({"1", "16", "128"})
+    public int games;
+
+    private File[] gameFiles; // One PGN file per game
+    private File mergedFile; // The PGN of every game merged into one tree
+    private Object mergedTree; // The root of the tree in MERGEDFILE
+    private ArrayList<Object> trees; // The trees of GAMEFILES, rebuilt before every merge since merging is destructive
+
+    @Setup(Level.Trial)
+    public void setup() throws Throwable
+    {
+        gameFiles = new File[games];
+        ArrayList<Object> roots = new ArrayList<>();
+        for (int g = 0; g < games; g++)
+        {
+            gameFiles[g] = write(toPGN(Engine.randomGame(START, PLIES, g)));
+            roots.add((Object) Engine.CONVERT_PGN_TO_TREE.invokeExact((Object) gameFiles[g]));
+        }
+
+        mergedTree = (Object) Engine.MERGE_TREES.invokeExact((Object) roots);
+        mergedFile = write((String) (Object) Engine.CONVERT_TREE_TO_PGN.invokeExact(mergedTree));
+    }
+
+    @Setup(Level.Invocation)
+    public void readTrees() throws Throwable
+    {
+        trees = new ArrayList<>(games);
+        for (File f : gameFiles)
+        {
+            trees.add((Object) Engine.CONVERT_PGN_TO_TREE.invokeExact((Object) f));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles()
+    {
+        for (File f : gameFiles)
+        {
+            f.delete();
+        }
+        mergedFile.delete();
+    }
+
+    @Benchmark
+    public Object convertPGNToTree() throws Throwable
+    {
+        return (Object) Engine.CONVERT_PGN_TO_TREE.invokeExact((Object) mergedFile);
+    }
+
+    @Benchmark
+    public Object mergeTrees() throws Throwable
+    {
+        return (Object) Engine.MERGE_TREES.invokeExact((Object) trees);
+    }
+
+    @Benchmark
+    public Object convertTreeToPGN() throws Throwable
+    {
+        return (Object) Engine.CONVERT_TREE_TO_PGN.invokeExact(mergedTree);
+    }
+
+    /**
+     * @param moves The SAN of the moves of a game from the starting position
+     * @return A PGN of the game
+     */
+    private static String toPGN(List<String> moves)
+    {
+        StringBuilder sb = new StringBuilder("[Result \"*\"]\n\n");
+        for (int i = 0; i < moves.size(); i++)
+        {
+            if (i % 2 == 0)
+            {
+                sb.append(i / 2 + 1).append(". ");
+            }
+            sb.append(moves.get(i)).append(' ');
+        }
+        return sb.append('*').toString();
+    }
+
+    /**
+     * @param pgn The contents of a PGN file
+     * @return A temporary file containing PGN
+     */
+    private static File write(String pgn) throws IOException
+    {
+        File f = File.createTempFile("benchmark", ".pgn");
+        f.deleteOnExit();
+        Files.writeString(f.toPath(), pgn);
+        return f;
+    }
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fixed-depth searches of positions of increasing complexity, with one thread and in parallel. Next to the searches per
+ * second, the inverse of the time to reach the depth, the nodes counter gives the nodes per second of all threads
+ * together. Comparing both across thread counts shows how the parallel search scales: the nodes per second should grow
+ * with the threads as long as there are cores for them, and the searches per second by less, since the helpers repeat
+ * some of each other's work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark
+{
+    @Param({"opening", "middlegame", "endgame"})
+    public String complexity;
+
+    @Param({"6"})
+    public int depth;
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    private Object table; // The transposition table of SEARCH, emptied before every search so none can reuse another's work
+    private Object search; // A ParallelSearch of the position, reused so only the search itself is measured
+
+    /**
+     * The nodes searched, which JMH reports per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes
+    {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws Throwable
+    {
+        String fen = switch (complexity)
+        {
+            case "opening" -> "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+            case "middlegame" -> "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+            case "endgame" -> "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+            default -> throw new IllegalArgumentException(complexity);
+        };
+
+        Object board = (Object) Engine.NEW_BOARD.invokeExact();
+        Engine.START_FROM_FEN.invokeExact(board, (Object) fen);
+        table = (Object) Engine.NEW_TABLE.invokeExact(16);
+        search = (Object) Engine.NEW_PARALLEL_SEARCH.invokeExact((Object) Engine.GET_POSITION.invokeExact(board), threads, table);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() throws Throwable
+    {
+        Engine.CLEAR_TABLE.invokeExact(table);
+    }
+
+    @Benchmark
+    public Object search(Nodes counter) throws Throwable
+    {
+        Object result = (Object) Engine.PARALLEL_SEARCH.invokeExact(search, depth, 0L, 0L);
+        counter.nodes += (long) Engine.GET_NODES.invokeExact(result);
+        return result;
+    }
+}
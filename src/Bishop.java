@@ -24,10 +24,8 @@ public class Bishop extends Piece
      */
     @Override
     protected ArrayList<Square> calcVisionFromSquare(Square s) {
-        ArrayList<Square> ret = new ArrayList<>();
-        ret.addAll(diagonal1.getUnblockedVision(s));
-        ret.addAll(diagonal2.getUnblockedVision(s));
-        return ret;
+        Board b = s.getBoard();
+        return b.getSquares(Bitboard.bishopAttacks(s.getIndex(), b.getPosition().getOccupied()));
     }
 
     /**
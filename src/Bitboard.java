@@ -0,0 +1,308 @@
+import java.util.Arrays;
+
+public final class Bitboard
+{
+    // Squares are numbered a1 = 0, b1 = 1, ..., h1 = 7, a2 = 8, ..., h8 = 63, so bit N of a mask is square N
+
+    public static final long FILE_A = 0x0101010101010101L; // Every square on the A file
+    public static final long FILE_H = FILE_A << 7; // Every square on the H file
+    public static final long RANK_1 = 0xFFL; // Every square on the first rank
+    public static final long RANK_2 = RANK_1 << 8; // Every square on the second rank
+    public static final long RANK_4 = RANK_1 << 24; // Every square on the fourth rank
+    public static final long RANK_5 = RANK_1 << 32; // Every square on the fifth rank
+    public static final long RANK_7 = RANK_1 << 48; // Every square on the seventh rank
+    public static final long RANK_8 = RANK_1 << 56; // Every square on the eighth rank
+
+    protected static final long[] KNIGHT_ATTACKS = new long[64]; // The squares a knight sees from each square
+    protected static final long[] KING_ATTACKS = new long[64]; // The squares a king sees from each square
+    protected static final long[][] PAWN_ATTACKS = new long[2][64]; // The squares a pawn of each color sees from each square
+    protected static final long[][] BETWEEN = new long[64][64]; // The squares strictly between two squares on a shared rank, file, or diagonal, or 0 if they share none
+    protected static final long[][] LINE = new long[64][64]; // Every square of the rank, file, or diagonal through two squares, or 0 if they share none
+
+    private static final long[] ROOK_MASKS = new long[64]; // The relevant blocker squares for a rook on each square
+    private static final long[] BISHOP_MASKS = new long[64]; // The relevant blocker squares for a bishop on each square
+    private static final long[] ROOK_MAGICS = new long[64]; // The magic multiplier for a rook on each square
+    private static final long[] BISHOP_MAGICS = new long[64]; // The magic multiplier for a bishop on each square
+    private static final int[] ROOK_SHIFTS = new int[64]; // The shift applied to the magic product for a rook on each square
+    private static final int[] BISHOP_SHIFTS = new int[64]; // The shift applied to the magic product for a bishop on each square
+    private static final long[][] ROOK_TABLE = new long[64][]; // The rook attack sets, indexed by square and then by magic index
+    private static final long[][] BISHOP_TABLE = new long[64][]; // The bishop attack sets, indexed by square and then by magic index
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}}; // {file step, rank step} for each rook direction
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}}; // {file step, rank step} for each bishop direction
+
+    static
+    {
+        for (int sq = 0; sq < 64; sq++)
+        {
+            KNIGHT_ATTACKS[sq] = leaperAttacks(sq, new int[][] {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}});
+            KING_ATTACKS[sq] = leaperAttacks(sq, new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}});
+            PAWN_ATTACKS[Position.WHITE][sq] = leaperAttacks(sq, new int[][] {{-1, 1}, {1, 1}});
+            PAWN_ATTACKS[Position.BLACK][sq] = leaperAttacks(sq, new int[][] {{-1, -1}, {1, -1}});
+        }
+
+        for (int a = 0; a < 64; a++)
+        {
+            for (int[][] directions : new int[][][] {ROOK_DIRECTIONS, BISHOP_DIRECTIONS})
+            {
+                for (int[] d : directions)
+                {
+                    long ray = slidingAttacks(a, 0, new int[][] {d});
+                    long back = slidingAttacks(a, 0, new int[][] {{-d[0], -d[1]}});
+                    long between = 0;
+                    int f = fileOf(a) + d[0];
+                    int r = rankOf(a) + d[1];
+                    while (f >= 0 && f < 8 && r >= 0 && r < 8)
+                    {
+                        int b = square(f, r);
+                        BETWEEN[a][b] = between;
+                        LINE[a][b] = ray | back | bit(a);
+                        between |= bit(b);
+                        f += d[0];
+                        r += d[1];
+                    }
+                }
+            }
+        }
+
+        // A fixed seed keeps the magics, and therefore the table layout, identical from run to run
+        long[] seed = {0x9E3779B97F4A7C15L};
+        for (int sq = 0; sq < 64; sq++)
+        {
+            ROOK_MASKS[sq] = relevantMask(sq, ROOK_DIRECTIONS);
+            ROOK_SHIFTS[sq] = 64 - Long.bitCount(ROOK_MASKS[sq]);
+            ROOK_TABLE[sq] = new long[1 << Long.bitCount(ROOK_MASKS[sq])];
+            ROOK_MAGICS[sq] = findMagic(sq, ROOK_MASKS[sq], ROOK_SHIFTS[sq], ROOK_TABLE[sq], ROOK_DIRECTIONS, seed);
+
+            BISHOP_MASKS[sq] = relevantMask(sq, BISHOP_DIRECTIONS);
+            BISHOP_SHIFTS[sq] = 64 - Long.bitCount(BISHOP_MASKS[sq]);
+            BISHOP_TABLE[sq] = new long[1 << Long.bitCount(BISHOP_MASKS[sq])];
+            BISHOP_MAGICS[sq] = findMagic(sq, BISHOP_MASKS[sq], BISHOP_SHIFTS[sq], BISHOP_TABLE[sq], BISHOP_DIRECTIONS, seed);
+        }
+    }
+
+    private Bitboard()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param sq A square index
+     * @param occupied The mask of all occupied squares
+     * @return The mask of all squares seen by a rook on SQ, including the first blocker in each direction
+     */
+    public static long rookAttacks(int sq, long occupied)
+    {
+        return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    /**
+     * @param sq A square index
+     * @param occupied The mask of all occupied squares
+     * @return The mask of all squares seen by a bishop on SQ, including the first blocker in each direction
+     */
+    public static long bishopAttacks(int sq, long occupied)
+    {
+        return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    /**
+     * @param sq A square index
+     * @param occupied The mask of all occupied squares
+     * @return The mask of all squares seen by a queen on SQ
+     */
+    public static long queenAttacks(int sq, long occupied)
+    {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    /**
+     * @param file The zero-indexed file (A -> 0, B -> 1, etc.)
+     * @param rank The zero-indexed rank (first rank -> 0)
+     * @return The index of the square
+     */
+    public static int square(int file, int rank)
+    {
+        return rank * 8 + file;
+    }
+
+    /**
+     * @param sq A square index
+     * @return The zero-indexed file of SQ
+     */
+    public static int fileOf(int sq)
+    {
+        return sq & 7;
+    }
+
+    /**
+     * @param sq A square index
+     * @return The zero-indexed rank of SQ
+     */
+    public static int rankOf(int sq)
+    {
+        return sq >>> 3;
+    }
+
+    /**
+     * @param sq A square index
+     * @return The mask containing only SQ
+     */
+    public static long bit(int sq)
+    {
+        return 1L << sq;
+    }
+
+    /**
+     * @param mask A non-empty mask
+     * @return The index of the lowest square in MASK
+     */
+    public static int lsb(long mask)
+    {
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * @param sq A square index
+     * @param steps {file step, rank step} pairs
+     * @return The mask of every square one step away from SQ that stays on the board
+     */
+    private static long leaperAttacks(int sq, int[][] steps)
+    {
+        long ret = 0;
+        for (int[] step : steps)
+        {
+            int f = fileOf(sq) + step[0];
+            int r = rankOf(sq) + step[1];
+            if (f >= 0 && f < 8 && r >= 0 && r < 8)
+            {
+                ret |= bit(square(f, r));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Walks each direction from SQ until the edge of the board or the first occupied square.
+     *
+     * @param sq A square index
+     * @param occupied The mask of all occupied squares
+     * @param directions {file step, rank step} pairs
+     * @return The mask of all squares seen from SQ
+     */
+    private static long slidingAttacks(int sq, long occupied, int[][] directions)
+    {
+        long ret = 0;
+        for (int[] d : directions)
+        {
+            int f = fileOf(sq) + d[0];
+            int r = rankOf(sq) + d[1];
+            while (f >= 0 && f < 8 && r >= 0 && r < 8)
+            {
+                long b = bit(square(f, r));
+                ret |= b;
+                if ((occupied & b) != 0)
+                {
+                    break;
+                }
+                f += d[0];
+                r += d[1];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param sq A square index
+     * @param directions {file step, rank step} pairs
+     * @return The mask of squares whose occupancy can change the attacks from SQ. The last square in each direction never can.
+     */
+    private static long relevantMask(int sq, int[][] directions)
+    {
+        long ret = 0;
+        for (int[] d : directions)
+        {
+            int f = fileOf(sq) + d[0];
+            int r = rankOf(sq) + d[1];
+            while (f + d[0] >= 0 && f + d[0] < 8 && r + d[1] >= 0 && r + d[1] < 8)
+            {
+                ret |= bit(square(f, r));
+                f += d[0];
+                r += d[1];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Searches for a multiplier that maps every blocker subset of MASK to a table slot without destructive collisions,
+     * then fills TABLE with the corresponding attack sets.
+     *
+     * @param sq A square index
+     * @param mask The relevant blocker mask of SQ
+     * @param shift 64 minus the number of bits in MASK
+     * @param table The table to be filled
+     * @param directions {file step, rank step} pairs
+     * @param seed A one-element array holding the state of the random number generator
+     * @return The magic multiplier
+     */
+    private static long findMagic(int sq, long mask, int shift, long[] table, int[][] directions, long[] seed)
+    {
+        int size = table.length;
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+
+        // Enumerate every subset of MASK with the carry-rippler trick
+        long subset = 0;
+        for (int i = 0; i < size; i++)
+        {
+            occupancies[i] = subset;
+            attacks[i] = slidingAttacks(sq, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+
+        boolean[] used = new boolean[size];
+        while (true)
+        {
+            long magic = nextRandom(seed) & nextRandom(seed) & nextRandom(seed);
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6)
+            {
+                continue;
+            }
+
+            Arrays.fill(used, false);
+            boolean fail = false;
+            for (int i = 0; i < size && !fail; i++)
+            {
+                int index = (int) ((occupancies[i] * magic) >>> shift);
+                if (!used[index])
+                {
+                    used[index] = true;
+                    table[index] = attacks[i];
+                }
+                else if (table[index] != attacks[i])
+                {
+                    fail = true;
+                }
+            }
+            if (!fail)
+            {
+                return magic;
+            }
+        }
+    }
+
+    /**
+     * @param seed A one-element array holding the state of the xorshift generator, advanced in place
+     * @return The next pseudo-random number
+     */
+    private static long nextRandom(long[] seed)
+    {
+        long x = seed[0];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        seed[0] = x;
+        return x * 0x2545F4914F6CDD1DL;
+    }
+}
@@ -1,8 +1,10 @@
 import java.util.ArrayList;
+import java.util.Map;
 
 public class Board
 {
     private final Square[][] board; // The 8×8 2D array consisting of the 64 squares comprising the chessboard
+    private final Position position; // The bitboard representation of the position, of which the squares and men are a view
 
     protected Rank first; // The first rank
     protected Rank second; // The second rank
@@ -54,24 +56,27 @@ public class Board
     protected Diagonal g8h7Diagonal; // The diagonal from g8 to h7
     protected Diagonal h8h8Diagonal; // The diagonal from h8 to h8
 
-    private FEN fen; // The FEN of the board
+    private FEN fen; // The FEN of the board, or null until getFen() next derives it from the bitboard position
+    private FEN startFen; // The FEN the game started from
     private Side toMove; // The side with the next move
-    private boolean whiteOO; // True if White can legally castle kingside on the next move, false otherwise
-    private boolean whiteOOO; // True if White can legally castle queenside on the next move, false otherwise
-    private boolean blackOO; // True if Black can legally castle kingside on the next move, false otherwise
-    private boolean blackOOO; // True if Black can legally castle queenside on the next move, false otherwise
+
+    private final int[] legalMoves; // The packed legal moves of the player to move, as written by the move generator
+    private int legalMoveCount; // The number of moves in LEGALMOVES
+    private final SANCache sanCache; // The packed move of each SAN recently read, by the position it was read in
+    private TranspositionTable table; // The table every search of the board shares, or null until the first search
 
     private final Player white; // The White player
     private final Player black; // The Black player
 
     private boolean built; // True if the board is fully constructed, false otherwise. See .toString().
 
-    private final ArrayList<FEN> fenHistory;
     private final ArrayList<Move> moveHistory;
-    private int fenHistIndex;
+    private final ArrayList<Man> captureHistory; // The man captured by each move in MOVEHISTORY, or null if it captured nothing
+    private final RepetitionTable repetitions; // The number of times each position since the last pawn move or capture has occurred, keyed by hash
     private int moveHistIndex;
 
     protected GameState state;
+    private boolean repetitionDraws; // True if a threefold repetition ends the game, false if it is left to be claimed
 
     /**
      * No parameters. Just lots and lots of construction and assignment.
@@ -91,15 +96,20 @@ public class Board
         built = false;
 
         // Creates players
-        white = new Player(Side.WHITE);
-        black = new Player(Side.BLACK);
+        white = new Player(Side.WHITE, this);
+        black = new Player(Side.BLACK, this);
 
-        fenHistory = new ArrayList<>();
         moveHistory = new ArrayList<>();
-        fenHistIndex = -1;
+        captureHistory = new ArrayList<>();
+        repetitions = new RepetitionTable();
         moveHistIndex = -1;
 
         state = GameState.IN_PROGRESS;
+        repetitionDraws = true;
+
+        position = new Position();
+        legalMoves = new int[MoveGenerator.MAX_MOVES];
+        sanCache = new SANCache();
 
         // Creates the board and the squares that comprise it
         board = new Square[][]
@@ -171,7 +181,7 @@ public class Board
         setAllStraights();
 
         // Load the board to the starting chess position
-        startFromFen(new FEN(FEN.DEFAULT_FEN, this));
+        startFromFen(new FEN(FEN.DEFAULT_FEN));
 
         // Set BUILT to true
         built = true;
@@ -194,45 +204,6 @@ public class Board
         }
     }
 
-    /**
-     * Set visions for White and Black
-     */
-    public void setAllVisions()
-    {
-        setVisionForWhite();
-        setVisionForBlack();
-    }
-
-    /**
-     * Sets the vision for the white player
-     */
-    protected void setVisionForWhite()
-    {
-        for (Man m : white.getPieces())
-        {
-            m.setVision();
-        }
-        white.setVision();
-
-        whiteOO = fen.isWk() && getCastlingLegality('k', Side.WHITE);
-        whiteOOO = fen.isWq() && getCastlingLegality('q', Side.WHITE);
-    }
-
-    /**
-     * Sets the vision for the black player
-     */
-    protected void setVisionForBlack()
-    {
-        for (Man m : black.getPieces())
-        {
-            m.setVision();
-        }
-        black.setVision();
-
-        blackOO = fen.isBk() && getCastlingLegality('k', Side.BLACK);
-        blackOOO = fen.isBq() && getCastlingLegality('q', Side.BLACK);
-    }
-
     /**
      * Clear, then load the board from the FEN object
      *
@@ -245,12 +216,11 @@ public class Board
      */
     public void startFromFen(FEN fen) throws InvalidSquareException, InvalidPieceException, TooManyKingsException, InvalidMoveException
     {
-        fenHistory.clear();
         moveHistory.clear();
-        fenHistIndex = -1;
+        captureHistory.clear();
         moveHistIndex = -1;
         loadFromFen(fen);
-        updateFenHistory(fen);
+        startFen = fen;
     }
 
     /**
@@ -261,192 +231,221 @@ public class Board
      * @throws InvalidPieceException @see1, @see2
      * @throws TooManyKingsException @see1
      * @throws InvalidMoveException @see2
-     * @see #placePieces(String)
-     * @see #setAllLegalMoves()
+     * @see #placePieces(PositionRecord)
+     * @see #updatePositionState()
      */
     public void loadFromFen(FEN fen) throws TooManyKingsException, InvalidSquareException, InvalidPieceException, InvalidMoveException
     {
         clearBoard();
 
-        String[] fenArray = fen.toString().split(" ");
         this.fen = fen;
-
         toMove = fen.getToMove();
 
-        toMove = fenArray[1].charAt(0) == 'w' ? Side.WHITE : Side.BLACK;
+        position.load(fen.getRecord());
+        placePieces(fen.getRecord());
+        repetitions.clear();
+        repetitions.add(position.getHash());
 
-        placePieces(fen.getBoardString());
-
-        setAllVisions();
-
-        setLegalMovesForPlayer(toMove);
+        updatePositionState();
     }
 
     /**
-     * Deletes from FENHISTORY any FENs of moves that have been undone, then adds the newest one
+     * Counts one more occurrence of the current position. A pawn move or capture can never be reversed, so every
+     * position before it is forgotten first.
      *
-     * @param f The newest FEN to be added
+     * @return The number of times the current position has occurred since the last pawn move or capture
      */
-    private void updateFenHistory(FEN f)
+    private int addRepetition()
     {
-        if (fenHistIndex != fenHistory.size() - 1)
+        if (position.getHalfmoves() == 0)
         {
-            for (int i = fenHistIndex + 1; i < fenHistory.size(); )
-            {
-                fenHistory.remove(i);
-            }
-
+            repetitions.clear();
         }
-        fenHistory.add(f);
-        fenHistIndex++;
+        return repetitions.add(position.getHash());
+    }
 
-        int count = 0;
-        for (FEN ff : fenHistory)
+    /**
+     * Uncounts the current position, to be called just before the move leading to it is unmade
+     *
+     * @see #rebuildRepetitions()
+     */
+    private void removeRepetition()
+    {
+        repetitions.remove(position.getHash());
+    }
+
+    /**
+     * Refills the repetition table with every position since the last pawn move or capture that the bitboard position
+     * still remembers. Called after undoing a pawn move or capture, whose earlier positions had been forgotten.
+     */
+    private void rebuildRepetitions()
+    {
+        repetitions.clear();
+        int window = Math.min(position.getHalfmoves(), position.getPly());
+        for (int i = 0; i <= window; i++)
         {
-            if (f.equals(ff) && ++count == 3)
-            {
-                gameOver(null);
-                break;
-            }
+            repetitions.add(position.getHash(i));
         }
     }
 
     /**
      * Deletes from MOVEHISTORY any moves that have been undone, then adds the newest one
      * @param m The newest move to be added
+     * @param captured The man captured by M, or null
      */
-    private void updateMoveHistory(Move m)
+    private void updateMoveHistory(Move m, Man captured)
     {
         if (moveHistIndex != moveHistory.size() - 1)
         {
             for (int i = moveHistIndex + 1; i < moveHistory.size(); )
             {
                 moveHistory.remove(i);
+                captureHistory.remove(i);
             }
         }
         moveHistory.add(m);
+        captureHistory.add(captured);
         moveHistIndex++;
     }
 
     /**
-     * Undoes the last move by moving back in the history and loading from that FEN. Does nothing if
-     * the board has no moves played from the initial FEN.
+     * Undoes the last move by putting its men back and unmaking it in the bitboard position, which restores its own
+     * state and hash. Does nothing if the board has no moves played from the initial FEN. Since every move
+     * is played with the game in progress, the game is in progress again afterwards.
      *
      * @throws TooManyKingsException @see
      * @throws InvalidMoveException @see
      * @throws InvalidSquareException @see
      * @throws InvalidPieceException @see
-     * @see #loadFromFen(FEN)
+     * @see #unplayMove(Move, Man)
+     * @see #updatePositionState()
      */
     protected void undoMove() throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
         if (moveHistIndex >= 0)
         {
+            boolean irreversible = position.getHalfmoves() == 0;
+            removeRepetition();
+            unplayMove(moveHistory.get(moveHistIndex), captureHistory.get(moveHistIndex));
+            if (irreversible)
+            {
+                rebuildRepetitions();
+            }
             moveHistIndex--;
-            fenHistIndex--;
-            loadFromFen(fenHistory.get(fenHistIndex));
+            updateFen();
+            updatePositionState();
+            state = GameState.IN_PROGRESS;
         }
     }
 
     /**
-     * Redoes a single move that has been undone. Does nothing if there are no undone moves.
+     * Redoes a single move that has been undone by playing it again.
+     * Does nothing if there are no undone moves.
      *
      * @throws TooManyKingsException @see
      * @throws InvalidMoveException @see
      * @throws InvalidSquareException @see
      * @throws InvalidPieceException @see
-     * @see #loadFromFen(FEN)
+     * @see #playMove(Move)
+     * @see #updatePositionState()
      */
     protected void redoMove() throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
         if (moveHistIndex < moveHistory.size() - 1)
         {
             moveHistIndex++;
-            fenHistIndex++;
-            loadFromFen(fenHistory.get(fenHistIndex));
+            playMove(moveHistory.get(moveHistIndex));
+            addRepetition();
+            updateFen();
+            updatePositionState();
         }
     }
 
     /**
-     * @param dir Either 'k' or 'q', representing in which direction castling is being checked
-     * @param s The side whose castling is being checked
-     * @return True if S can castle in the direction DIR, false otherwise
+     * @param from The square index a piece of the player to move leaves
+     * @param to The square index the piece lands on
+     * @return True if moving the piece from FROM to TO is legal, false otherwise
      */
-    private boolean getCastlingLegality(char dir, Side s)
+    protected boolean isLegalMove(int from, int to)
     {
-        Square k = getPlayer(s).getKing().getSquare();
-        Square one = dir == 'k' ? k.getEastSquare() : k.getWestSquare();
-        Square two = dir == 'k' ? one.getEastSquare() : one.getWestSquare();
-        ArrayList<Square> v = getOpponent(s).getVision();
-        return one.getPiece() == null
-            && two.getPiece() == null
-            && (dir != 'q' || two.getWestSquare().getPiece() == null)
-            && !v.contains(one)
-            && !v.contains(two);
+        for (int i = 0; i < legalMoveCount; i++)
+        {
+            if (PackedMove.from(legalMoves[i]) == from && PackedMove.to(legalMoves[i]) == to)
+            {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Sets legal moves for both players
-     *
-     * @throws InvalidMoveException @see
-     * @throws InvalidPieceException @see
-     * @throws InvalidSquareException @see
-     * @see Man#setLegalMoves()
+     * @param from The square index a piece of the player to move leaves
+     * @param to The square index the piece lands on
+     * @param promotion The piece type to which a pawn promotes, or Position.EMPTY
+     * @return The packed legal move from FROM to TO promoting to PROMOTION, or PackedMove.NONE if there is none
      */
-    private void setAllLegalMoves() throws InvalidMoveException, InvalidPieceException, InvalidSquareException
+    protected int getLegalMove(int from, int to, int promotion)
     {
-        setLegalMovesForWhite();
-        setLegalMovesForBlack();
+        for (int i = 0; i < legalMoveCount; i++)
+        {
+            int move = legalMoves[i];
+            if (PackedMove.from(move) == from && PackedMove.to(move) == to && PackedMove.promotion(move) == promotion)
+            {
+                return move;
+            }
+        }
+        return PackedMove.NONE;
     }
 
     /**
-     * Sets legal moves for the player playing with S
+     * Looks SAN up in the cache for the current position, then among the legal moves of the player to move
      *
-     * @param s The side of the player whose legal moves are to be set
-     * @throws InvalidSquareException @see
-     * @throws InvalidPieceException @see
-     * @throws InvalidMoveException @see
-     * @see #setLegalMovesForWhite()
-     * @see #setLegalMovesForBlack()
+     * @param san The Standard Algebraic Notation of a move
+     * @return The packed legal move SAN notates, or PackedMove.NONE if SAN is malformed, ambiguous, or illegal
+     * @see PackedMove#fromSAN(String, int[], int)
      */
-    private void setLegalMovesForPlayer(Side s) throws InvalidSquareException, InvalidPieceException, InvalidMoveException
+    protected int getLegalMove(String san)
     {
-        if (s == Side.WHITE) setLegalMovesForWhite();
-        else                 setLegalMovesForBlack();
+        long hash = position.getHash();
+        int move = sanCache.get(hash, san);
+        if (move == PackedMove.NONE)
+        {
+            move = PackedMove.fromSAN(san, legalMoves, legalMoveCount);
+            if (move != PackedMove.NONE)
+            {
+                sanCache.put(hash, san, move);
+            }
+        }
+        return move;
     }
 
     /**
-     * Sets legal moves for the white player
+     * Wraps the packed legal moves leaving FROM, or every packed legal move if FROM is null. Nothing is decoded or
+     * notated until the moves are used.
      *
-     * @throws InvalidMoveException @see
-     * @throws InvalidPieceException @see
-     * @throws InvalidSquareException @see
-     * @see Man#setLegalMoves()
+     * @param from A Square, or null
+     * @return A list of the legal moves of the player to move that leave FROM
+     * @see Move#Move(int, Board)
      */
-    private void setLegalMovesForWhite() throws InvalidMoveException, InvalidPieceException, InvalidSquareException
+    protected ArrayList<Move> getLegalMoves(Square from)
     {
-        for (Man m : white.getPieces())
+        ArrayList<Move> ret = new ArrayList<>();
+        for (int i = 0; i < legalMoveCount; i++)
         {
-            m.setLegalMoves();
+            if (from == null || PackedMove.from(legalMoves[i]) == from.getIndex())
+            {
+                ret.add(new Move(legalMoves[i], this));
+            }
         }
-        white.setLegalMoves();
+        return ret;
     }
 
     /**
-     * Sets legal moves for the black player
-     *
-     * @throws InvalidMoveException @see
-     * @throws InvalidPieceException @see
-     * @throws InvalidSquareException @see
-     * @see Man#setLegalMoves()
+     * @return The number of legal moves of the player to move
      */
-    private void setLegalMovesForBlack() throws InvalidMoveException, InvalidPieceException, InvalidSquareException
+    protected int getLegalMoveCount()
     {
-        for (Man m : black.getPieces())
-        {
-            m.setLegalMoves();
-        }
-        black.setLegalMoves();
+        return legalMoveCount;
     }
 
     /**
@@ -462,7 +461,7 @@ public class Board
      */
     public void startFromFen(String s) throws InvalidSquareException, InvalidFENException, InvalidPieceException, TooManyKingsException, InvalidMoveException
     {
-        startFromFen(new FEN(s, this));
+        startFromFen(new FEN(s));
     }
 
     /**
@@ -478,7 +477,7 @@ public class Board
      */
     public void loadFromFen(String s) throws InvalidSquareException, InvalidFENException, InvalidPieceException, TooManyKingsException, InvalidMoveException
     {
-        loadFromFen(new FEN(s, this));
+        loadFromFen(new FEN(s));
     }
 
     /**
@@ -493,44 +492,38 @@ public class Board
                 board[i][j].setPiece(null);
             }
         }
+        position.clear();
         white.reset();
         black.reset();
     }
 
     /**
-     * Place pieces on the board according the BOARDSTRING. Give the corresponding players the pieces placed.
+     * Place pieces on the board according to R. Give the corresponding players the pieces placed.
      *
-     * @param boardString A FEN board string
+     * @param r A position, as parsed from a FEN
      * @throws TooManyKingsException @see
      * @see Player#givePiece
      */
-    private void placePieces(String boardString) throws TooManyKingsException
+    private void placePieces(PositionRecord r) throws TooManyKingsException
     {
-        String[] ranks = boardString.split("/");
-        for (int i = 0; i < 8; i++)
+        // From a8 along each rank, as a FEN lists them, so each player's men are in the same order as ever
+        for (int i = 0; i < 64; i++)
         {
-            char[] rankArr = ranks[i].toCharArray();
-            int index = 0;
-            for (int j = 0; j < rankArr.length; j++)
+            int sq = Bitboard.square(i % 8, 7 - i / 8);
+            int piece = r.getPiece(sq);
+            if (piece != Position.EMPTY)
             {
-                if (FEN.VALID_FEN_CHARS.substring(0, 12).indexOf(rankArr[j]) >= 0)
+                Square square = getSquare(sq);
+                Man m = pieceFromLetter(Position.charOf(piece), square);
+                if (Position.colorOf(piece) == Position.WHITE)
                 {
-                    Man m = pieceFromLetter(rankArr[j], board[i][index]);
-                    if (FEN.VALID_FEN_CHARS.substring(0, 6).indexOf(rankArr[j]) >= 0)
-                    {
-                        white.givePiece(m);
-                    }
-                    else
-                    {
-                        black.givePiece(m);
-                    }
-                    board[i][index].setPiece(m);
-                    index++;
+                    white.givePiece(m);
                 }
-                else // if (FEN.VALID_FEN_CHARS.substring(12).indexOf((rankArr[j])) >= 0)
+                else
                 {
-                    index += rankArr[j] - '0';
+                    black.givePiece(m);
                 }
+                square.setPiece(m);
             }
         }
     }
@@ -563,6 +556,30 @@ public class Board
         return board[i][j];
     }
 
+    /**
+     * @param index The bitboard index of the Square to be returned (a1 -> 0, b1 -> 1, ..., h8 -> 63)
+     * @return The Square with bitboard index INDEX
+     */
+    protected Square getSquare(int index)
+    {
+        return board[7 - Bitboard.rankOf(index)][Bitboard.fileOf(index)];
+    }
+
+    /**
+     * @param mask A bitboard mask of squares
+     * @return A list of the Squares contained in MASK
+     */
+    protected ArrayList<Square> getSquares(long mask)
+    {
+        ArrayList<Square> ret = new ArrayList<>(Long.bitCount(mask));
+        while (mask != 0)
+        {
+            ret.add(getSquare(Bitboard.lsb(mask)));
+            mask &= mask - 1;
+        }
+        return ret;
+    }
+
     /**
      * @param c A character representing which piece is to be created
      * @param square A Square on which the piece is to be created
@@ -770,39 +787,8 @@ public class Board
      */
     protected Square getEnPassantSquare()
     {
-        return fen.getEp();
-    }
-
-    /**
-     * @return True if White can legally castle kingside on the next move, false otherwise
-     */
-    protected boolean isWhiteOO()
-    {
-        return whiteOO;
-    }
-
-    /**
-     * @return True if White can legally castle queenside on the next move, false otherwise
-     */
-    protected boolean isWhiteOOO()
-    {
-        return whiteOOO;
-    }
-
-    /**
-     * @return True if Black can legally castle kingside on the next move, false otherwise
-     */
-    protected boolean isBlackOO()
-    {
-        return blackOO;
-    }
-
-    /**
-     * @return True if Black can legally castle queenside on the next move, false otherwise
-     */
-    protected boolean isBlackOOO()
-    {
-        return blackOOO;
+        int ep = position.getEpSquare();
+        return ep == -1 ? null : getSquare(ep);
     }
 
     /**
@@ -815,8 +801,8 @@ public class Board
      * @throws InvalidSquareException @see3, @see4
      * @see Player#takePiece(Man)
      * @see Player#givePiece(Man)
-     * @see #updateFen(Move)
-     * @see Player#setLegalMoves()
+     * @see #updateFen()
+     * @see #updatePositionState()
      */
     public void move(Move m) throws InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
     {
@@ -829,227 +815,179 @@ public class Board
                 throw new InvalidMoveException("Move does not apply to this board");
             }
 
-            // Assigns players to variables as applicable
-            Player mover = getPlayer(toMove);
-            Player oppo = getOpponent(toMove);
-
             // Ensure the move is legal
-            if (!mover.getLegalMoves().contains(m))
+            if (getLegalMove(m.getFrom().getIndex(), m.getTo().getIndex(), PackedMove.promotion(m.getCode())) == PackedMove.NONE)
             {
                 throw new InvalidMoveException("Illegal move");
             }
 
-            // Store information that will be used a lot locally
-            Square to = m.getTo();
-            Square from = m.getFrom();
-            Man piece = m.getPiece();
-
-            from.setPiece(null);
+            Man captured = playMove(m);
 
-            // Handle castling
-            Castle castle = m.getCastle();
-            if (castle != Castle.NO)
+            // Update the FEN, then everything derived from the new position. Note that TOMOVE is updated in updateFen().
+            updateFen();
+            if (addRepetition() == 3 && repetitionDraws)
             {
-                to.setPiece(piece);
-                (castle == Castle.KING ? to.getWestSquare() : to.getEastSquare()).setPiece(m.getRookSquare().getPiece());
-                m.getRookSquare().setPiece(null);
+                gameOver(null);
             }
-            // Handle en passant
-            else if (m.isEnPassant())
+            boolean checkFlag = updatePositionState();
+            if (checkFlag)
             {
-                to.setPiece(piece);
-                Square epSquare = toMove == Side.WHITE ? to.getSouthSquare() : to.getNorthSquare();
-                oppo.takePiece(epSquare.getPiece());
-                epSquare.setPiece(null);
+                m.makeCheck();
             }
-            // Handle all other cases
-            else
+
+            if (legalMoveCount == 0)
             {
-                if (to.getPiece() != null)
-                {
-                    oppo.takePiece(to.getPiece());
-                }
-                // Handle promotion
-                if (m.getPromotionPiece() != 0)
+                if (checkFlag)
                 {
-                    to.setPiece(pieceFromLetter((toMove == Side.WHITE ? m.getPromotionPiece() : Character.toLowerCase(m.getPromotionPiece())), m.getTo()));
-                    mover.takePiece(piece);
-                    mover.givePiece(to.getPiece());
+                    m.makeCheckmate();
+                    gameOver(Utils.flip(toMove));
                 }
                 else
                 {
-                    to.setPiece(piece);
+                    gameOver(null);
                 }
             }
 
-            // En-passant-pin any pawns as necessary
-            oppo.epUnpinAll();
-            if (piece instanceof Pawn && Math.abs(from.getRankInt() - to.getRankInt()) == 2 && oppo.getKing().getRank() == to.getRank())
-            {
-                // Get pawns east and west of TO, if they exist
-                Man east = to.getEastSquare().getPiece();
-                east = east instanceof Pawn ? east : null;
-                Man west = to.getWestSquare().getPiece();
-                west = west instanceof Pawn ? west : null;
-
-            /*
-            If they're both there, then neither is pinned, because if either takes en passant, the other will be there to block check.
-            If neither is there, then the whole question is irrelevant, because there's nothing to be pinned.
-             */
-                if (east == null ^ west == null)
-                {
-                    Rank r = to.getRank();
-                    int kingIndex = r.getIndexOfSquare(oppo.getKing().getSquare());
-                    int pawnIndex = r.getIndexOfSquare(to);
-                    boolean greater = kingIndex > pawnIndex;
-                    boolean b = west == null;
-
-                    // Get the list of all pieces between the king and the side of the board, traversing towards and then past the pawn that just moved
-                    ArrayList<Man> arr = new ArrayList<>();
-                    int pm = greater ? -1 : 1;
-                    for (int i = kingIndex + pm; greater ? i >= 0 : i < 8; i += pm)
-                    {
-                        Man man = r.getSquares()[i].getPiece();
-                        if (man != null)
-                        {
-                            arr.add(man);
-                        }
-                    }
-
-                    // Set PAWN to the non-null pawn
-                    Pawn pawn = (Pawn) (b ? east : west);
-
-                    // Based on a logic table
-                    if (arr.size() >= 3 && arr.get(0) == (greater == b ? pawn : piece) && arr.get(1) == (greater == b ? piece : pawn) && arr.get(2) instanceof Rook && arr.get(2).getColor() == toMove)
-                    {
-                        pawn.epPin();
-                    }
-                }
-            }
+            updateMoveHistory(m, captured);
+        }
+    }
 
-            // Update the FEN and set both players' visions
-            updateFen(m);
-            setAllVisions();
+    /**
+     * Moves the men of M on the squares and the pieces of M in the bitboard position, without any legality checks or
+     * updates to the FEN, visions, or legal moves
+     *
+     * @param m A move to be played
+     * @return The man captured by M, or null if M is not a capture
+     * @throws InvalidPieceException @see
+     * @throws TooManyKingsException @see
+     * @see Player#takePiece(Man)
+     * @see Player#givePiece(Man)
+     */
+    private Man playMove(Move m) throws InvalidPieceException, TooManyKingsException
+    {
+        // Assigns players to variables as applicable
+        Player mover = getPlayer(toMove);
+        Player oppo = getOpponent(toMove);
 
-            // if (mover.i)
+        // Store information that will be used a lot locally
+        Square to = m.getTo();
+        Square from = m.getFrom();
+        Man piece = m.getPiece();
+        Man captured = null;
 
-            // Put the king in check as necessary, and uncheck the moving player
-            King ok = oppo.getKing();
-            Square okSquare = ok.getSquare();
-            boolean flag = false;
-            Man c1 = null;
-            Straight s1 = null;
-            Man c2 = null;
-            Straight s2 = null;
+        position.makeMove(m.getCode());
+        from.setPiece(null);
 
-            for (Man man : mover.getPieces())
+        // Handle castling
+        Castle castle = m.getCastle();
+        if (castle != Castle.NO)
+        {
+            Square rookTo = castle == Castle.KING ? to.getWestSquare() : to.getEastSquare();
+            to.setPiece(piece);
+            rookTo.setPiece(m.getRookSquare().getPiece());
+            m.getRookSquare().setPiece(null);
+        }
+        // Handle en passant
+        else if (m.isEnPassant())
+        {
+            to.setPiece(piece);
+            Square epSquare = toMove == Side.WHITE ? to.getSouthSquare() : to.getNorthSquare();
+            captured = epSquare.getPiece();
+            oppo.takePiece(captured);
+            epSquare.setPiece(null);
+        }
+        // Handle all other cases
+        else
+        {
+            captured = to.getPiece();
+            if (captured != null)
             {
-                if (man.getVision().contains(okSquare))
-                {
-                    if (flag)
-                    {
-                        c2 = man;
-                        if (c2 instanceof Queen || c2 instanceof Rook)
-                        {
-                            if (c2.getFile().containsPiece(ok))
-                            {
-                                s2 = c2.getFile();
-                            }
-                            else if (c2.getRank().containsPiece(ok))
-                            {
-                                s2 = c2.getRank();
-                            }
-                        }
-                        if (c2 instanceof Queen || c2 instanceof Bishop)
-                        {
-                            if (c2.getDiagonal1().containsPiece(ok))
-                            {
-                                s2 = c2.getDiagonal1();
-                            }
-                            else if (c2.getDiagonal2().containsPiece(ok))
-                            {
-                                s2 = c2.getDiagonal2();
-                            }
-                        }
-                        break;
-                    }
-                    else
-                    {
-                        c1 = man;
-                        if (c1 instanceof Queen || c1 instanceof Rook)
-                        {
-                            if (c1.getFile().containsPiece(ok))
-                            {
-                                s1 = c1.getFile();
-                            }
-                            else if (c1.getRank().containsPiece(ok))
-                            {
-                                s1 = c1.getRank();
-                            }
-                        }
-                        if (c1 instanceof Queen || c1 instanceof Bishop)
-                        {
-                            if (c1.getDiagonal1().containsPiece(ok))
-                            {
-                                s1 = c1.getDiagonal1();
-                            }
-                            else if (c1.getDiagonal2().containsPiece(ok))
-                            {
-                                s1 = c1.getDiagonal2();
-                            }
-                        }
-                        flag = true;
-                    }
-                }
+                oppo.takePiece(captured);
             }
-            boolean checkFlag = false;
-            if (c1 != null)
+            // Handle promotion
+            if (m.getPromotionPiece() != 0)
             {
-                m.makeCheck();
-                if (c2 == null)
-                {
-                    oppo.check(c1);
-                }
-                else
-                {
-                    oppo.doubleCheck();
-                }
-                ok.check(s1, s2, c1, c2);
-                checkFlag = true;
+                char c = toMove == Side.WHITE ? m.getPromotionPiece() : Character.toLowerCase(m.getPromotionPiece());
+                to.setPiece(pieceFromLetter(c, m.getTo()));
+                mover.takePiece(piece);
+                mover.givePiece(to.getPiece());
             }
-            mover.getKing().check(null, null, null, null);
-            mover.uncheck();
+            else
+            {
+                to.setPiece(piece);
+            }
+        }
+        return captured;
+    }
 
-            // Unpin all pieces, then pin the opponent's pieces as applicable
-            mover.unpinAll();
-            oppo.unpinAll();
-            oppo.pinAll();
+    /**
+     * Reverses playMove(M), putting the men of M and CAPTURED back on their squares and unmaking M in the bitboard
+     * position. M must be the last move played.
+     *
+     * @param m The last move played
+     * @param captured The man captured by M, or null if M was not a capture
+     * @throws InvalidPieceException @see
+     * @throws TooManyKingsException @see
+     * @see Player#takePiece(Man)
+     * @see Player#givePiece(Man)
+     */
+    private void unplayMove(Move m, Man captured) throws InvalidPieceException, TooManyKingsException
+    {
+        // The side that played M is the one not to move
+        Player mover = getOpponent(toMove);
+        Player oppo = getPlayer(toMove);
+
+        Square to = m.getTo();
+        Square from = m.getFrom();
+        Man piece = to.getPiece();
+
+        position.unmakeMove();
+
+        Castle castle = m.getCastle();
+        if (castle != Castle.NO)
+        {
+            Square rookTo = castle == Castle.KING ? to.getWestSquare() : to.getEastSquare();
+            m.getRookSquare().setPiece(rookTo.getPiece());
+            rookTo.setPiece(null);
+        }
+        else if (m.getPromotionPiece() != 0)
+        {
+            // The promoted piece goes away and a new pawn takes its place
+            mover.takePiece(piece);
+            piece = pieceFromLetter(mover.getColor() == Side.WHITE ? 'P' : 'p', from);
+            mover.givePiece(piece);
+        }
+        to.setPiece(null);
+        from.setPiece(piece);
 
-            // Set the legal moves for the next player to move. Note that TOMOVE has been updated in updateFen().
-            if (toMove == Side.WHITE)
+        if (captured != null)
+        {
+            if (m.isEnPassant())
             {
-                setLegalMovesForWhite();
+                (toMove == Side.WHITE ? to.getNorthSquare() : to.getSouthSquare()).setPiece(captured);
             }
             else
             {
-                setLegalMovesForBlack();
+                to.setPiece(captured);
             }
+            oppo.givePiece(captured);
+        }
+    }
 
-            if (getPlayer(toMove).getLegalMoves().size() == 0)
-            {
-                if (checkFlag)
-                {
-                    m.makeCheckmate();
-                    gameOver(Utils.flip(toMove));
-                }
-                else
-                {
-                    gameOver(null);
-                }
-            }
+    /**
+     * Regenerates the packed legal moves of the player to move, marked for disambiguation so any of them can be
+     * notated later without the position. Move objects, visions, and SAN are only built when asked for.
+     *
+     * @return True if the player to move is in check, false otherwise
+     * @see MoveGenerator#generateLegalMoves(Position, int[])
+     * @see MoveGenerator#markDisambiguation(int[], int)
+     */
+    private boolean updatePositionState()
+    {
+        legalMoveCount = MoveGenerator.generateLegalMoves(position, legalMoves);
+        MoveGenerator.markDisambiguation(legalMoves, legalMoveCount);
 
-            updateMoveHistory(m);
-        }
+        return MoveGenerator.checkers(position) != 0;
     }
 
     /**
@@ -1106,43 +1044,100 @@ public class Board
     }
 
     /**
-     * Updates THIS.FEN according to M
+     * Drops THIS.FEN, which most moves never have read, for getFen() to rebuild from the bitboard position if asked.
+     * Sets TOMOVE from the bitboard position.
      *
-     * @param m The move played requiring THIS.FEN to be updated
-     * @throws InvalidSquareException @see
-     * @see #getSquare(String)
+     * @see #getFen()
      */
-    private void updateFen(Move m) throws InvalidSquareException
+    private void updateFen()
     {
-        Man man = m.getPiece();
-        boolean wkMoved = man instanceof King && man.getColor() == Side.WHITE;
-        boolean bkMoved = man instanceof King && man.getColor() == Side.BLACK;
+        this.toMove = Position.sideOf(position.getSideToMove());
+        this.fen = null;
+    }
 
-        boolean wqrMoved = man instanceof Rook && m.getFrom().equals(getSquare("a1"));
-        boolean wkrMoved = man instanceof Rook && m.getFrom().equals(getSquare("h1"));
-        boolean bqrMoved = man instanceof Rook && m.getFrom().equals(getSquare("a8"));
-        boolean bkrMoved = man instanceof Rook && m.getFrom().equals(getSquare("h8"));
+    /**
+     * Counts the leaf nodes of the legal move tree of the current position to DEPTH plies. The board itself is left
+     * untouched; only the bitboard position is played through and restored.
+     *
+     * @param depth The number of plies to search, at least 0
+     * @return The number of legal move sequences of length DEPTH from the current position
+     * @see Perft#count(Position, int)
+     */
+    public long perft(int depth)
+    {
+        return Perft.count(position, depth);
+    }
 
-        Square to = m.getTo();
-        boolean epFlag = man instanceof Pawn && Math.abs(to.getRankInt() - m.getFrom().getRankInt()) == 2;
-        Square epSquare = null;
-        if (epFlag)
+    /**
+     * @param depth The number of plies to search, at least 1
+     * @return The perft count of the current position to DEPTH plies split by first move, keyed by SAN
+     * @see Perft#divide(Position, int)
+     */
+    public Map<String, Long> divide(int depth)
+    {
+        return Perft.divide(position, depth);
+    }
+
+    /**
+     * Searches a copy of the current position for the best move of the player to move, leaving the board untouched
+     *
+     * @param millis The number of milliseconds to search for
+     * @return The best move found, its score, and the line expected after it
+     * @see #search(long, int)
+     */
+    public SearchResult search(long millis)
+    {
+        return search(millis, 1);
+    }
+
+    /**
+     * Searches copies of the current position with THREADS threads for the best move of the player to move, leaving
+     * the board untouched. Every search of the board shares one transposition table, made on the first, so a search
+     * starts from what the ones before it found about the game.
+     *
+     * @param millis The number of milliseconds to search for
+     * @param threads The number of threads to search with, at least 1
+     * @return The best move found, its score, and the line expected after it
+     * @see ParallelSearch#ParallelSearch(Position, int, TranspositionTable)
+     * @see ParallelSearch#search(int, long, long)
+     */
+    public SearchResult search(long millis, int threads)
+    {
+        if (table == null)
         {
-            epSquare = toMove == Side.WHITE ? to.getSouthSquare() : to.getNorthSquare();
+            table = new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES);
         }
+        return new ParallelSearch(position, threads, table).search(Search.MAX_PLY, Search.NO_LIMIT, millis);
+    }
 
-        boolean zeroHM = man instanceof Pawn || m.isCapture();
+    /**
+     * @return The bitboard representation of the position
+     */
+    protected Position getPosition()
+    {
+        return position;
+    }
 
-        this.fen = new FEN(board, Utils.flip(toMove), fen.isWk() && !wkMoved && !wkrMoved, fen.isWq() && !wkMoved && !wqrMoved, fen.isBk() && !bkMoved && !bkrMoved, fen.isBq() && !bkMoved && !bqrMoved, epSquare, zeroHM ? 0 : fen.getHalfmoves() + 1, toMove == Side.WHITE ? fen.getFullmoves() : fen.getFullmoves() + 1);
-        updateFenHistory(this.fen);
-        this.toMove = Utils.flip(toMove);
+    /**
+     * @return The Zobrist hash of the current position. Equal positions, regardless of move counters, have equal hashes.
+     */
+    public long getHash()
+    {
+        return position.getHash();
     }
 
     /**
+     * Formats the FEN of the current position the first time it is asked for after a move, then keeps it until the next
+     *
      * @return The FEN object
+     * @see Position#toRecord()
      */
     protected FEN getFen()
     {
+        if (fen == null)
+        {
+            fen = new FEN(position.toRecord());
+        }
         return fen;
     }
 
@@ -1155,11 +1150,11 @@ public class Board
     }
 
     /**
-     * @return A list of all FEN states of the game
+     * @return The FEN the game started from, before any of the moves in the move history
      */
-    protected ArrayList<FEN> getFenHistory()
+    protected FEN getStartFen()
     {
-        return fenHistory;
+        return startFen;
     }
 
     /**
@@ -1169,4 +1164,15 @@ public class Board
     {
         return state;
     }
+
+    /**
+     * Sets whether a threefold repetition ends the game. It is only a draw a player may claim, so a line that repeats
+     * the position and plays on, as a repertoire may, is replayed with R false; only checkmate and stalemate end it.
+     *
+     * @param r True if a threefold repetition ends the game, as by default, false otherwise
+     */
+    protected void setRepetitionDraws(boolean r)
+    {
+        repetitionDraws = r;
+    }
 }
\ No newline at end of file
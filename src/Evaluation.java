@@ -0,0 +1,135 @@
+public final class Evaluation
+{
+    /*
+    Material and piece-square tables, from the simplified evaluation function by Tomasz Michniewski. Each table is laid
+    out as the board is seen from White's side, a8 first and h1 last, so a white piece on square index SQ reads entry
+    SQ ^ 56 and a black piece reads entry SQ. The king has one table for the middlegame, when it should hide behind its
+    pawns, and another for the endgame, when it should come to the centre. The two are blended by how much material is
+    left, so the score does not jump when the last queen comes off.
+     */
+
+    public static final int[] VALUES = {100, 320, 330, 500, 900, 0}; // The value of each piece type in centipawns
+
+    private static final int[][] TABLES =
+            {
+                {
+                     0,   0,   0,   0,   0,   0,   0,   0,
+                    50,  50,  50,  50,  50,  50,  50,  50,
+                    10,  10,  20,  30,  30,  20,  10,  10,
+                     5,   5,  10,  25,  25,  10,   5,   5,
+                     0,   0,   0,  20,  20,   0,   0,   0,
+                     5,  -5, -10,   0,   0, -10,  -5,   5,
+                     5,  10,  10, -20, -20,  10,  10,   5,
+                     0,   0,   0,   0,   0,   0,   0,   0
+                },
+                {
+                   -50, -40, -30, -30, -30, -30, -40, -50,
+                   -40, -20,   0,   0,   0,   0, -20, -40,
+                   -30,   0,  10,  15,  15,  10,   0, -30,
+                   -30,   5,  15,  20,  20,  15,   5, -30,
+                   -30,   0,  15,  20,  20,  15,   0, -30,
+                   -30,   5,  10,  15,  15,  10,   5, -30,
+                   -40, -20,   0,   5,   5,   0, -20, -40,
+                   -50, -40, -30, -30, -30, -30, -40, -50
+                },
+                {
+                   -20, -10, -10, -10, -10, -10, -10, -20,
+                   -10,   0,   0,   0,   0,   0,   0, -10,
+                   -10,   0,   5,  10,  10,   5,   0, -10,
+                   -10,   5,   5,  10,  10,   5,   5, -10,
+                   -10,   0,  10,  10,  10,  10,   0, -10,
+                   -10,  10,  10,  10,  10,  10,  10, -10,
+                   -10,   5,   0,   0,   0,   0,   5, -10,
+                   -20, -10, -10, -10, -10, -10, -10, -20
+                },
+                {
+                     0,   0,   0,   0,   0,   0,   0,   0,
+                     5,  10,  10,  10,  10,  10,  10,   5,
+                    -5,   0,   0,   0,   0,   0,   0,  -5,
+                    -5,   0,   0,   0,   0,   0,   0,  -5,
+                    -5,   0,   0,   0,   0,   0,   0,  -5,
+                    -5,   0,   0,   0,   0,   0,   0,  -5,
+                    -5,   0,   0,   0,   0,   0,   0,  -5,
+                     0,   0,   0,   5,   5,   0,   0,   0
+                },
+                {
+                   -20, -10, -10,  -5,  -5, -10, -10, -20,
+                   -10,   0,   0,   0,   0,   0,   0, -10,
+                   -10,   0,   5,   5,   5,   5,   0, -10,
+                    -5,   0,   5,   5,   5,   5,   0,  -5,
+                     0,   0,   5,   5,   5,   5,   0,  -5,
+                   -10,   5,   5,   5,   5,   5,   0, -10,
+                   -10,   0,   5,   0,   0,   0,   0, -10,
+                   -20, -10, -10,  -5,  -5, -10, -10, -20
+                },
+                {
+                   -30, -40, -40, -50, -50, -40, -40, -30,
+                   -30, -40, -40, -50, -50, -40, -40, -30,
+                   -30, -40, -40, -50, -50, -40, -40, -30,
+                   -30, -40, -40, -50, -50, -40, -40, -30,
+                   -20, -30, -30, -40, -40, -30, -30, -20,
+                   -10, -20, -20, -20, -20, -20, -20, -10,
+                    20,  20,   0,   0,   0,   0,  20,  20,
+                    20,  30,  10,   0,   0,  10,  30,  20
+                }
+            };
+
+    private static final int[] KING_ENDGAME =
+            {
+               -50, -40, -30, -20, -20, -30, -40, -50,
+               -30, -20, -10,   0,   0, -10, -20, -30,
+               -30, -10,  20,  30,  30,  20, -10, -30,
+               -30, -10,  30,  40,  40,  30, -10, -30,
+               -30, -10,  30,  40,  40,  30, -10, -30,
+               -30, -10,  20,  30,  30,  20, -10, -30,
+               -30, -30,   0,   0,   0,   0, -30, -30,
+               -50, -30, -30, -30, -30, -30, -30, -50
+            };
+
+    private static final int[] PHASES = {0, 1, 1, 2, 4, 0}; // How much each piece type counts towards the middlegame
+    private static final int MIDDLEGAME = 24; // The phase of the starting position, and the most counted
+    private static final int TEMPO = 10; // The worth of having the move
+
+    private Evaluation()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Scores P statically, by material and where each piece stands, with no look at what either side threatens
+     *
+     * @param p A position
+     * @return The score of P in centipawns, positive if it favors the side to move
+     */
+    public static int evaluate(Position p)
+    {
+        int score = 0;
+        int phase = 0;
+        for (int color = Position.WHITE; color <= Position.BLACK; color++)
+        {
+            int sign = color == Position.WHITE ? 1 : -1;
+            int flip = color == Position.WHITE ? 56 : 0;
+            for (int type = Position.PAWN; type < Position.KING; type++)
+            {
+                int[] table = TABLES[type];
+                long bb = p.getPieces(color, type);
+                while (bb != 0)
+                {
+                    score += sign * (VALUES[type] + table[Bitboard.lsb(bb) ^ flip]);
+                    phase += PHASES[type];
+                    bb &= bb - 1;
+                }
+            }
+        }
+
+        // The kings, blended between their middlegame and endgame tables by the material left
+        phase = Math.min(phase, MIDDLEGAME);
+        int white = p.getKingSquare(Position.WHITE) ^ 56;
+        int black = p.getKingSquare(Position.BLACK);
+        int middlegame = TABLES[Position.KING][white] - TABLES[Position.KING][black];
+        int endgame = KING_ENDGAME[white] - KING_ENDGAME[black];
+        score += (middlegame * phase + endgame * (MIDDLEGAME - phase)) / MIDDLEGAME;
+
+        return (p.getSideToMove() == Position.WHITE ? score : -score) + TEMPO;
+    }
+}
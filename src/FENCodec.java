@@ -0,0 +1,291 @@
+import java.util.Arrays;
+
+public final class FENCodec
+{
+    private static final String CASTLE_CHARS = "KQkq"; // The castling letters, in the order FEN gives them
+    private static final int[] CASTLE_RIGHTS = {Position.WHITE_OO, Position.WHITE_OOO, Position.BLACK_OO, Position.BLACK_OOO}; // The right of each letter of CASTLE_CHARS
+    private static final int[] CASTLE_ROOKS = {7, 0, 63, 56}; // The square of the rook of each letter of CASTLE_CHARS
+
+    private FENCodec()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Parses and validates FEN in one pass over its characters. The board must have eight ranks of eight squares and
+     * one king of each side, the castling rights must be in KQkq order with the king and rook of each still on their squares, and an en passant
+     * square must be on the third or sixth rank behind a pawn of the side that just moved.
+     *
+     * @param fen A FEN String
+     * @return The position FEN describes
+     * @throws InvalidFENException if FEN is not a valid FEN String, saying where
+     */
+    public static PositionRecord parse(String fen) throws InvalidFENException
+    {
+        int n = fen.length();
+        int i = 0;
+
+        // The board, from a8 to h1
+        byte[] squares = new byte[64];
+        Arrays.fill(squares, (byte) Position.EMPTY);
+        int[] kings = new int[2]; // The number of kings of each side
+        int rank = 7;
+        int file = 0;
+        while (true)
+        {
+            if (i == n)
+            {
+                throw new InvalidFENException("FEN ends in the board");
+            }
+            char c = fen.charAt(i++);
+            if (c == ' ')
+            {
+                if (rank != 0 || file != 8)
+                {
+                    throw new InvalidFENException("FEN board does not have eight ranks of eight squares");
+                }
+                break;
+            }
+            if (c == '/')
+            {
+                if (rank == 0 || file != 8)
+                {
+                    throw new InvalidFENException("FEN board does not have eight ranks of eight squares");
+                }
+                rank--;
+                file = 0;
+            }
+            else if (c >= '1' && c <= '8')
+            {
+                file += c - '0';
+                if (file > 8)
+                {
+                    throw new InvalidFENException("FEN board rank " + (rank + 1) + " has more than eight squares");
+                }
+            }
+            else
+            {
+                int piece = Position.pieceFromChar(c);
+                if (piece == Position.EMPTY || file == 8)
+                {
+                    throw new InvalidFENException("Invalid FEN board character '" + c + "'");
+                }
+                squares[Bitboard.square(file++, rank)] = (byte) piece;
+                if (Position.typeOf(piece) == Position.KING)
+                {
+                    kings[Position.colorOf(piece)]++;
+                }
+            }
+        }
+        if (kings[Position.WHITE] != 1 || kings[Position.BLACK] != 1)
+        {
+            throw new InvalidFENException("FEN board must have one king of each side, not " + kings[Position.WHITE] + " white and " + kings[Position.BLACK] + " black");
+        }
+
+        // The side to move
+        if (i + 2 > n || fen.charAt(i + 1) != ' ' || fen.charAt(i) != 'w' && fen.charAt(i) != 'b')
+        {
+            throw new InvalidFENException("FEN side to move must be \"w\" or \"b\"");
+        }
+        int side = fen.charAt(i) == 'w' ? Position.WHITE : Position.BLACK;
+        i += 2;
+
+        // The castling rights, each needing its king and rook at home
+        int rights = 0;
+        if (i < n && fen.charAt(i) == '-')
+        {
+            i++;
+        }
+        else
+        {
+            int from = 0;
+            while (i < n && fen.charAt(i) != ' ')
+            {
+                int k = CASTLE_CHARS.indexOf(fen.charAt(i++), from);
+                if (k < 0)
+                {
+                    throw new InvalidFENException("FEN castling rights must be \"-\" or a subset of \"KQkq\" in that order");
+                }
+                int king = k < 2 ? Position.pieceOf(Position.WHITE, Position.KING) : Position.pieceOf(Position.BLACK, Position.KING);
+                int rook = k < 2 ? Position.pieceOf(Position.WHITE, Position.ROOK) : Position.pieceOf(Position.BLACK, Position.ROOK);
+                if (squares[k < 2 ? 4 : 60] != king || squares[CASTLE_ROOKS[k]] != rook)
+                {
+                    throw new InvalidFENException("FEN castling right '" + CASTLE_CHARS.charAt(k) + "' needs the king and rook on their starting squares");
+                }
+                rights |= CASTLE_RIGHTS[k];
+                from = k + 1;
+            }
+            if (from == 0)
+            {
+                throw new InvalidFENException("FEN castling rights are missing");
+            }
+        }
+        i = expectSpace(fen, i);
+
+        // The en passant square, behind the pawn that just moved two squares
+        int ep = -1;
+        if (i < n && fen.charAt(i) == '-')
+        {
+            i++;
+        }
+        else
+        {
+            if (i + 2 > n || fen.charAt(i) < 'a' || fen.charAt(i) > 'h' || fen.charAt(i + 1) != '3' && fen.charAt(i + 1) != '6')
+            {
+                throw new InvalidFENException("FEN en passant square must be \"-\" or a square on the third or sixth rank");
+            }
+            ep = Bitboard.square(fen.charAt(i) - 'a', fen.charAt(i + 1) - '1');
+            boolean third = fen.charAt(i + 1) == '3';
+            int pawn = third ? Position.pieceOf(Position.WHITE, Position.PAWN) : Position.pieceOf(Position.BLACK, Position.PAWN);
+            if (squares[third ? ep + 8 : ep - 8] != pawn)
+            {
+                throw new InvalidFENException("FEN en passant square has no pawn in front of it");
+            }
+            i += 2;
+        }
+        i = expectSpace(fen, i);
+
+        // The move counters
+        int end = digitsEnd(fen, i);
+        int halfmoves = parseCounter(fen, i, end);
+        i = expectSpace(fen, end);
+        end = digitsEnd(fen, i);
+        int fullmoves = parseCounter(fen, i, end);
+        for (i = end; i < n; i++)
+        {
+            if (fen.charAt(i) != ' ')
+            {
+                throw new InvalidFENException("FEN has more than six fields");
+            }
+        }
+
+        return new PositionRecord(squares, side, rights, ep, halfmoves, fullmoves);
+    }
+
+    /**
+     * @param fen A FEN String
+     * @return True if FEN is a valid FEN String, false otherwise
+     * @see #parse(String)
+     */
+    public static boolean isValid(String fen)
+    {
+        try
+        {
+            parse(fen);
+            return true;
+        }
+        catch (InvalidFENException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the FEN of R into a single StringBuilder, run-length encoding the empty squares as it goes
+     *
+     * @param r A position
+     * @return The FEN String of R
+     */
+    public static String format(PositionRecord r)
+    {
+        StringBuilder sb = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--)
+        {
+            int empty = 0;
+            for (int file = 0; file < 8; file++)
+            {
+                int piece = r.getPiece(Bitboard.square(file, rank));
+                if (piece == Position.EMPTY)
+                {
+                    empty++;
+                }
+                else
+                {
+                    if (empty != 0)
+                    {
+                        sb.append(empty);
+                        empty = 0;
+                    }
+                    sb.append(Position.charOf(piece));
+                }
+            }
+            if (empty != 0)
+            {
+                sb.append(empty);
+            }
+            if (rank != 0)
+            {
+                sb.append('/');
+            }
+        }
+
+        sb.append(r.getSideToMove() == Position.WHITE ? " w " : " b ");
+        int rights = r.getCastlingRights();
+        if (rights == 0)
+        {
+            sb.append('-');
+        }
+        for (int k = 0; k < 4; k++)
+        {
+            if ((rights & CASTLE_RIGHTS[k]) != 0)
+            {
+                sb.append(CASTLE_CHARS.charAt(k));
+            }
+        }
+        sb.append(' ');
+        int ep = r.getEpSquare();
+        if (ep == -1)
+        {
+            sb.append('-');
+        }
+        else
+        {
+            sb.append((char) ('a' + Bitboard.fileOf(ep))).append((char) ('1' + Bitboard.rankOf(ep)));
+        }
+        sb.append(' ').append(r.getHalfmoves()).append(' ').append(r.getFullmoves());
+        return sb.toString();
+    }
+
+    /**
+     * @return The index after the space at I
+     * @throws InvalidFENException if there is no space at I
+     */
+    private static int expectSpace(String fen, int i) throws InvalidFENException
+    {
+        if (i >= fen.length() || fen.charAt(i) != ' ')
+        {
+            throw new InvalidFENException("FEN fields must be separated by single spaces");
+        }
+        return i + 1;
+    }
+
+    /**
+     * @return The index of the first character from I on that is not a digit
+     */
+    private static int digitsEnd(String fen, int i)
+    {
+        while (i < fen.length() && fen.charAt(i) >= '0' && fen.charAt(i) <= '9')
+        {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return The move counter written in the digits from START to END
+     * @throws InvalidFENException if there are no digits, or too many
+     */
+    private static int parseCounter(String fen, int start, int end) throws InvalidFENException
+    {
+        if (start == end || end - start > 9)
+        {
+            throw new InvalidFENException("FEN move counters must be whole numbers");
+        }
+        int value = 0;
+        for (int i = start; i < end; i++)
+        {
+            value = value * 10 + fen.charAt(i) - '0';
+        }
+        return value;
+    }
+}
@@ -7,16 +7,10 @@ public class Man
     protected Rank rank; // The Rank of the Square on which the man currently stands
     protected File file; // The File of the Square on which the man currently stands
     protected Diagonal diagonal1, diagonal2; // The Diagonals of the Square on which the man currently stands
-    protected ArrayList<Square> vision; // All Squares visible to the man
-    protected ArrayList<Move> legalMoves; // All legal moves available to the man
-    protected boolean pinned; // True if the man is absolutely pinned. False otherwise.
-    protected Straight pinStraight; // The straight along which the man is absolutely pinned if PINNED, null otherwise
 
     /**
      * Sets THIS.SIDE and THIS.SQUARE according to parameters.
      * Sets Rank, File, and Diagonals according to the parameter square.
-     * Initializes ArrayLists to be empty.
-     * Sets PINNED to false.
      *
      * @param side The color of the man
      * @param square The Square on which the man initially stands
@@ -29,10 +23,6 @@ public class Man
         this.file = square.getFile();
         this.diagonal1 = square.getDiagonal1();
         this.diagonal2 = square.getDiagonal2();
-        this.vision = new ArrayList<>();
-        this.legalMoves = new ArrayList<>();
-        this.pinned = false;
-        this.pinStraight = null;
     }
 
     /**
@@ -62,11 +52,13 @@ public class Man
     }
 
     /**
+     * Calculated from the Square on which the man currently stands each time it is asked for
+     *
      * @return The list of all squares visible to the man
      */
     public ArrayList<Square> getVision()
     {
-        return vision;
+        return calcVisionFromSquare(square);
     }
 
     /**
@@ -80,43 +72,13 @@ public class Man
     }
 
     /**
-     * Sets the ArrayList<Square> vision to the result of calculating the vision of the man from the Square on which
-     * it currently stands.
-     */
-    protected void setVision()
-    {
-        vision = calcVisionFromSquare(square);
-    }
-
-    /**
-     * Empties and refills the list of all legal moves for the man. To be overridden by the King and Pawn subclasses.
-     *
-     * If the man is pinned, it cannot move.
-     * Otherwise, for every square it sees, if moving to it would not capture the player's own piece, add moving to it as a legal move for the man.
+     * @param s A Square on the same Board
+     * @return True if the man can legally move to S on the next move, false otherwise
+     * @see Board#isLegalMove(int, int)
      */
-    protected void setLegalMoves() throws InvalidPieceException, InvalidSquareException, InvalidMoveException
-    {
-        legalMoves.clear();
-
-        for (Square s : vision)
-        {
-            if ((s.getPiece() == null || s.getPiece().getColor() != this.getColor()) && (!pinned || pinStraight.getIndexOfSquare(s) >= 0))
-            {
-                legalMoves.add(new Move(this, s, square.getBoard()));
-            }
-        }
-    }
-
     protected boolean canMoveToSquare(Square s)
     {
-        for (Move m : legalMoves)
-        {
-            if (m.getTo() == s)
-            {
-                return true;
-            }
-        }
-        return false;
+        return square.getBoard().isLegalMove(square.getIndex(), s.getIndex());
     }
 
     /**
@@ -152,31 +114,12 @@ public class Man
     }
 
     /**
-     * @return The list of legal moves the man can make
+     * @return The list of legal moves the man can make, empty if it is not its side to move
+     * @see Board#getLegalMoves(Square)
      */
     protected ArrayList<Move> getLegalMoves()
     {
-        return legalMoves;
-    }
-
-    /**
-     * Unpins the man so it can move
-     */
-    protected void unpin()
-    {
-        pinned = false;
-        pinStraight = null;
-    }
-
-    /**
-     * @param s The straight on which THIS is absolutely pinned
-     *
-     * Pins the man so it can't move
-     */
-    protected void pin(Straight s)
-    {
-        pinned = true;
-        pinStraight = s;
+        return square.getBoard().getLegalMoves(square);
     }
 
     /**
@@ -218,12 +161,4 @@ public class Man
     {
         diagonal2 = d;
     }
-
-    /**
-     * @return The straight along which THIS is absolutely pinned
-     */
-    protected Straight getPinStraight()
-    {
-        return pinStraight;
-    }
 }
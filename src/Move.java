@@ -9,53 +9,56 @@ public class Move
     // The RegEx pattern any legal non-castling move notated in SAN must match
     private static final Pattern SAN_PATTERN = Pattern.compile("([KQRBN]?)([a-h]?)([1-8]?)(x?)([a-h][1-8])((=[QRBN])?)([+#]?)");
 
-    private Man piece; // The piece moving
-    private Square from; // The Square from which the piece is moving
-    private Square to; // The Square to which the piece is moving
-
-    private char promotionPiece; // The character representing the piece to which a pawn will promoted
-
-    private String san; // The SAN notation of the move
-    private final Player player; // The player moving
     private final Board board; // The board on which the move happens
-    private boolean takes; // True if the move is a capture, false otherwise
-    private Man takePiece; // The piece being captured
-    private boolean enPassant; // True if the move is an en passant capture, false otherwise
+    private int move; // The packed move, as written by the move generator. Everything else is decoded from it.
+    private String san; // The SAN notation of the move, or null until it is first asked for
 
-    private Castle castle; // NO if the move is not a castle, KING if the move is a kingside castle, QUEEN if the move is a queenside castle
-    private Square rookSquare; // The Square on which the rook involved in a castle is standing before the castle happens (i.e., a1, a8, h1, or h8)
+    /**
+     * Wraps a packed move generated for the position on B
+     *
+     * @param move A packed legal move of the player to move on B
+     * @param b The Board on which the move is to occur
+     * @see PackedMove
+     */
+    protected Move(int move, Board b)
+    {
+        this.board = b;
+        this.move = move;
+    }
 
     /**
-     * Decode SAN to get all variable assignments. Throw an exception if this isn't possible.
+     * Look SAN up among the legal moves of the player to move. If it notates none of them, decode it to find the piece
+     * moving and the Square to which it moves, so the exception thrown says what is wrong with it.
      *
      * @param san The Standard Algebraic Notation for the move
      * @param b The Board on which the move is to occur
+     * @throws InvalidMoveException if SAN is malformed, ambiguous, or illegal
      */
     public Move(String san, Board b) throws InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
         board = b;
 
-        // Get the player moving
-        if (b.getToMove() == Side.WHITE)
-        {
-            player = b.getWhite();
-        }
-        else
+        // Almost all SAN is of a legal move, which is found without any decoding below
+        move = b.getLegalMove(san);
+        if (move != PackedMove.NONE)
         {
-            player = b.getBlack();
+            return;
         }
 
+        Player player = b.getPlayer(b.getToMove());
+
         // Handle castling
         if (san.equals("O-O") || san.equals("O-O-O") || san.equals("0-0") || san.equals("0-0-0"))
         {
-            this.san = san;
-            setCastle();
-            castle();
+            Square from = player.getKing().getSquare();
+            Square to = san.length() == 3 ? from.getEastSquare().getEastSquare() : from.getWestSquare().getWestSquare();
+            move = b.getLegalMove(from.getIndex(), to.getIndex(), Position.EMPTY);
+            if (move == PackedMove.NONE)
+            {
+                throw new InvalidMoveException("Castling is illegal in this position");
+            }
             return;
         }
-        // If not castling, assign variables as applicable and continue
-        castle = Castle.NO;
-        rookSquare = null;
 
         // Create a RegEx matcher to test for non-castling and ensure SAN is a match
         Matcher matcher = SAN_PATTERN.matcher(san);
@@ -69,15 +72,13 @@ public class Move
         Extract the substrings representing the piece, file, and rank as provided.
         Set TAKES to true if the move is a capture.
         Set TO to the Square to which the piece is moving.
-        Set TAKEPIECE to the piece being captured if a piece is being captured, and null otherwise.
         Extract the substring representing promotion as provided.
          */
         String pieceNameStr = matcher.group(1);
         String pieceFileStr = matcher.group(2);
         String pieceRankStr = matcher.group(3);
-        takes = matcher.group(4).equals("x");
-        to = b.getSquare(matcher.group(5));
-        takePiece = to.getPiece();
+        boolean takes = matcher.group(4).equals("x");
+        Square to = b.getSquare(matcher.group(5));
         String promotionStr = matcher.group(6);
 
         // Ensure that either the piece is provided or the move is a non-capturing pawn move
@@ -129,8 +130,7 @@ public class Move
         char pieceChar = 0;
         char pieceFile = 0;
         int pieceRank = 0;
-
-        promotionPiece = 0;
+        char promotionPiece = 0;
 
         if (!pieceNameStr.equals(""))
             pieceChar = pieceNameStr.charAt(0);
@@ -143,7 +143,8 @@ public class Move
             promotionPiece = promotionStr.charAt(1);
         }
 
-        // Assign the correct chessman to PIECE
+        // Find the chessman moving
+        Man piece;
 
         // If piece
         if (pieceChar != 0)
@@ -227,8 +228,7 @@ public class Move
 
                 if (pieceRank != 0)
                 {
-                    from = f.getSquareFromRank(pieceRank);
-                    piece = from.getPiece();
+                    piece = f.getSquareFromRank(pieceRank).getPiece();
                     if (piece == null)
                     {
                         throw new InvalidPieceException("No pawn on specified square");
@@ -240,7 +240,7 @@ public class Move
                 }
                 else
                 {
-                    piece = getOnlyPossiblePawn(f);
+                    piece = getOnlyPossiblePawn(f, to, player);
                 }
             }
             // Otherwise still relatively simple, as at most one pawn can move forward to any particular square.
@@ -297,71 +297,36 @@ public class Move
             throw new InvalidPieceException("Invalid piece");
         }
 
-        // Get the Square from which the piece moved
-        from = piece.getSquare();
-
-        // Handle en passant variable assignment
-        enPassant = false;
-        Square ep = b.getEnPassantSquare();
-        if (ep != null && piece instanceof Pawn)
+        move = b.getLegalMove(piece.getSquare().getIndex(), to.getIndex(), promotionPiece == 0 ? Position.EMPTY : Position.typeOf(Position.pieceFromChar(promotionPiece)));
+        if (move == PackedMove.NONE)
         {
-            if (player.getColor() == Side.WHITE)
-            {
-                if ((ep == from.getNWSquare() || ep == from.getNESquare()) && to == ep)
-                {
-                    enPassant = true;
-                    takes = true;
-                }
-            }
-            else
-            {
-                if ((ep == from.getSWSquare() || ep == from.getSESquare()) && to == ep)
-                {
-                    enPassant = true;
-                    takes = true;
-                }
-            }
+            throw new InvalidMoveException("Illegal move");
         }
-
-        // Get the Standard Algebraic Notation, excluding check and checkmate symbols, for the move
-        this.san = getSAN();
     }
 
     /**
-     * ARR contains a list of possible pieces with THIS.TO in their vision. Of them, only one can be found.
-     * Finds said one by brute force.
+     * ARR contains a list of possible pieces that can legally move to the destination. Of them, only one can be found.
      *
-     * @param arr A list of possible pieces that can move to THIS.TO
-     * @return The only possible piece that can move to THIS.TO
+     * @param arr A list of possible pieces that can move to the destination
+     * @return The only possible piece that can move to the destination, or null if there is none
+     * @throws InvalidMoveException if more than one piece can move to the destination
      */
-    private Piece getOnlyPossiblePiece(ArrayList<Piece> arr) throws InvalidMoveException
+    private static Piece getOnlyPossiblePiece(ArrayList<Piece> arr) throws InvalidMoveException
     {
-        boolean foundPieceFlag = false;
-        Piece ret = null;
-
-        for (Piece p : arr)
+        if (arr.size() > 1)
         {
-            if (p.getVision().contains(to)) // TODO: Should this be `p.getVision().contains(to)` or `p.getLegalMoves().contains(to)`?
-            {
-                if (foundPieceFlag)
-                {
-                    throw new InvalidMoveException("Piece not properly specified");
-                }
-                else
-                {
-                    ret = p;
-                    foundPieceFlag = true;
-                }
-            }
+            throw new InvalidMoveException("Piece not properly specified");
         }
-        return ret;
+        return arr.isEmpty() ? null : arr.get(0);
     }
 
     /**
      * @param f A chessboard File
-     * @return The only pawn on F with THIS.TO in its vision]
+     * @param to The Square to which a pawn is capturing
+     * @param player The player moving
+     * @return The only pawn of PLAYER on F with TO in its vision
      */
-    private Pawn getOnlyPossiblePawn(File f) throws InvalidMoveException
+    private static Pawn getOnlyPossiblePawn(File f, Square to, Player player) throws InvalidMoveException
     {
         boolean foundPawnFlag = false;
         Pawn ret = null;
@@ -393,67 +358,22 @@ public class Move
     }
 
     /**
-     * Assigns instance variables as applicable
+     * Looks up the move of PIECE to TO among the legal moves of the player to move on B
      *
      * @param piece The chessman moving
      * @param to The Square to which PIECE is moving
      * @param b The Board on which the move occurs
      * @param promotionPiece A character representing the piece to which a pawn will promoted
+     * @throws InvalidMoveException if the move is illegal
      */
-    public Move(Man piece, Square to, Board b, char promotionPiece) throws InvalidMoveException, InvalidPieceException, InvalidSquareException {
-        if (b.getToMove() == Side.WHITE)
-        {
-            player = b.getWhite();
-        }
-        else
-        {
-            player = b.getBlack();
-        }
-
+    public Move(Man piece, Square to, Board b, char promotionPiece) throws InvalidMoveException, InvalidPieceException, InvalidSquareException
+    {
         this.board = b;
-        this.piece = piece;
-        this.from = piece.square;
-        this.to = to;
-        this.takePiece = to.getPiece();
 
-        if (piece instanceof King && !piece.getVision().contains(to))
+        Side color = b.getToMove();
+        if (to.getPiece() != null && to.getPiece().getColor() == color)
         {
-            castle();
-            return;
-        }
-        castle = Castle.NO;
-
-        takes = false;
-        if (takePiece != null)
-        {
-            if (to.getPiece().getColor() == player.getColor())
-            {
-                throw new InvalidMoveException("Destination square is already occupied by a piece of your color");
-            }
-            takes = true;
-        }
-
-        // Handles en passant variable assignment as applicable
-        enPassant = false;
-        Square ep = b.getEnPassantSquare();
-        if (ep != null && piece instanceof Pawn)
-        {
-            if (player.getColor() == Side.WHITE)
-            {
-                if ((ep == from.getNWSquare() || ep == from.getNESquare()) && to == ep)
-                {
-                    enPassant = true;
-                    takes = true;
-                }
-            }
-            else
-            {
-                if ((ep == from.getSWSquare() || ep == from.getSESquare()) && to == ep)
-                {
-                    enPassant = true;
-                    takes = true;
-                }
-            }
+            throw new InvalidMoveException("Destination square is already occupied by a piece of your color");
         }
 
         // Handles promotion exceptions
@@ -461,21 +381,26 @@ public class Move
         {
             throw new InvalidMoveException("Only pawns can promote");
         }
-        int promotionRank = player.getColor() == Side.WHITE ? 8 : 1;
+        int promotionRank = color == Side.WHITE ? 8 : 1;
         if (to.getRankInt() != promotionRank && promotionPiece != 0)
         {
-            throw new InvalidMoveException(Utils.toTitleCase(player.getColor().toString()) + " pawns can only promote on the " + Utils.toOrdinal(promotionRank) + " rank");
+            throw new InvalidMoveException(Utils.toTitleCase(color.toString()) + " pawns can only promote on the " + Utils.toOrdinal(promotionRank) + " rank");
         }
-        if (piece instanceof Pawn && to.getRankInt() == (piece.getColor() == Side.WHITE ? 8 : 1))
+        if (piece instanceof Pawn && to.getRankInt() == promotionRank)
         {
             if (!(promotionPiece == 'Q' || promotionPiece == 'R' || promotionPiece == 'B' || promotionPiece == 'N'))
             {
                 throw new InvalidMoveException("Pawn must promote to a non-King piece");
             }
         }
-        this.promotionPiece = promotionPiece;
 
-        this.san = getSAN(); // Get the Standard Algebraic Notation for the move, excluding checks and checkmates
+        int from = piece.getSquare().getIndex();
+        move = b.getLegalMove(from, to.getIndex(), promotionPiece == 0 ? Position.EMPTY : Position.typeOf(Position.pieceFromChar(promotionPiece)));
+        if (move == PackedMove.NONE)
+        {
+            boolean castling = piece instanceof King && Math.abs(to.getIndex() - from) == 2;
+            throw new InvalidMoveException(castling ? "Castling is illegal in this position" : "Illegal move");
+        }
     }
 
     /**
@@ -490,137 +415,19 @@ public class Move
     }
 
     /**
-     * No parameters, because instance variables are used.
-     * Uses instance variables provided by constructor to generate the Standard Algebraic Notation for the move.
+     * Writes the notation from the packed move the first time it is asked for and caches it, so moves that are only
+     * generated and played never build a String
      *
      * @return The Standard Algebraic Notation for the move
+     * @see PackedMove#toSAN(int)
      */
-    public String getSAN() throws InvalidMoveException, InvalidPieceException
-    {
-        String pieceStr = piece.toString().toUpperCase(); // Get piece
-        StringBuilder middle = new StringBuilder(); // Initialize empty StringBuilder to consist of things like row and file specification and capture denotation
-        String squareStr = to.toString(); // Get TO square
-        StringBuilder suffix = new StringBuilder(); // Initialize empty StringBuilder to consist of promotion suffix
-
-        // Handles captures
-        if (to.getPiece() != null)
-        {
-            if (to.getPiece().getColor() == piece.getColor())
-            {
-                throw new InvalidMoveException("Destination square is occupied by piece of same color");
-            }
-            else
-            {
-                middle.append("x");
-            }
-        }
-
-        // If King move, nothing else is relevant
-        if (pieceStr.equals("K"))
-        {
-            return pieceStr + middle.toString() + squareStr;
-        }
-
-        // Gets the list of the corresponding pieces to perform necessary specifications
-        ArrayList<Man> arr = switch(pieceStr)
-        {
-            case "Q" -> new ArrayList<>(player.getQueens());
-            case "R" -> new ArrayList<>(player.getRooks());
-            case "B" -> new ArrayList<>(player.getBishops());
-            case "N" -> new ArrayList<>(player.getKnights());
-            case "P" -> new ArrayList<>(player.getPawns());
-            default -> null;
-        };
-        if (arr == null)
-        {
-            throw new InvalidPieceException("Invalid piece in SAN dev");
-        }
-
-        // If not pawn, get all possible pieces, and add specifications if more than one piece have vision on THIS.TO
-        if (!pieceStr.equals("P"))
-        {
-            ArrayList<Man> posses = getAllPossiblePieces(arr);
-
-            boolean rFlag = false;
-            boolean fFlag = false;
-
-            if (posses.size() == 1)
-            {
-                return pieceStr + middle.toString() + squareStr + suffix.toString();
-            }
-
-            for (Man m : posses)
-            {
-                if (m == piece)
-                {
-                    continue;
-                }
-                if (m.getSquare().getRank() == piece.getSquare().getRank())
-                {
-                    rFlag = true;
-                }
-                if (m.getSquare().getFile() == piece.getSquare().getFile())
-                {
-                    fFlag = true;
-                }
-            }
-
-            if (fFlag)
-            {
-                if (rFlag)
-                {
-                    middle.insert(0, from.toString());
-                }
-                else
-                {
-                    middle.insert(0, from.getRankInt());
-                }
-            }
-            else
-            {
-                middle.insert(0, from.getFileLetter());
-            }
-        }
-        // if pawn, handle captures and non-captures as necessary. Handle promotion.
-        else
-        {
-            pieceStr = String.valueOf(from.getFileLetter());
-            if (enPassant)
-            {
-                middle.append("x");
-            }
-            else
-            {
-                if (!takes)
-                {
-                    pieceStr = "";
-                }
-            }
-            if (promotionPiece != 0)
-            {
-                suffix.append('=');
-                suffix.append(promotionPiece);
-            }
-        }
-
-        return pieceStr + middle.toString() + squareStr + suffix.toString();
-    }
-
-    /**
-     * @param arr A list of pieces
-     * @return A sublist of pieces that has THIS.TO in their vision
-     */
-    private ArrayList<Man> getAllPossiblePieces(ArrayList<Man> arr)
+    public String getSAN()
     {
-        ArrayList<Man> ret = new ArrayList<>();
-        for (Man m : arr)
+        if (san == null)
         {
-            if (m.getVision().contains(to) && (!m.pinned || m.getPinStraight().getIndexOfSquare(to) >= 0))
-            {
-                ret.add(m);
-            }
+            san = PackedMove.toSAN(move);
         }
-        return ret;
+        return san;
     }
 
     /**
@@ -631,66 +438,15 @@ public class Move
     @Override
     public String toString()
     {
-        return san;
+        return getSAN();
     }
 
     /**
-     * Sets all remaining variables as necessary
+     * @return The packed move
      */
-    private void castle() throws InvalidMoveException, InvalidSquareException
+    protected int getCode()
     {
-        promotionPiece = 0;
-        takes = false;
-        enPassant = false;
-
-        if (to == from.getEastSquare().getEastSquare())
-        {
-            if (player.getColor() == Side.WHITE ? board.isWhiteOO() : board.isBlackOO())
-            {
-                san = "O-O";
-                castle = Castle.KING;
-                rookSquare = player.getColor() == Side.WHITE ? board.getSquare("h1") : board.getSquare("h8");
-            }
-            else
-            {
-                throw new InvalidMoveException("Castling is illegal in this position");
-            }
-        }
-        else if (to == from.getWestSquare().getWestSquare())
-        {
-            if (player.getColor() == Side.WHITE ? board.isWhiteOOO() : board.isBlackOOO())
-            {
-                san = "O-O-O";
-                castle = Castle.QUEEN;
-                rookSquare = player.getColor() == Side.WHITE ? board.getSquare("a1") : board.getSquare("a8");
-            }
-            else
-            {
-                throw new InvalidMoveException("Castling is illegal in this position");
-            }
-        }
-    }
-
-    /**
-     * The two constructors have different information provided, which means only certain variables have been set.
-     * This method puts them both on the same page so they can call castle() and have no errors.
-     */
-    private void setCastle() throws InvalidMoveException
-    {
-        piece = player.getKing();
-        from = piece.getSquare();
-        if (san.equals("O-O") || san.equals("0-0"))
-        {
-            to = from.getEastSquare().getEastSquare();
-        }
-        else if (san.equals("O-O-O") || san.equals("0-0-0"))
-        {
-            to = from.getWestSquare().getWestSquare();
-        }
-        else
-        {
-            throw new InvalidMoveException("Somehow castling by SAN went wrong");
-        }
+        return move;
     }
 
     /**
@@ -698,7 +454,11 @@ public class Move
      */
     protected Castle getCastle()
     {
-        return castle;
+        if (!PackedMove.is(move, PackedMove.CASTLE))
+        {
+            return Castle.NO;
+        }
+        return PackedMove.to(move) > PackedMove.from(move) ? Castle.KING : Castle.QUEEN;
     }
 
     /**
@@ -714,7 +474,7 @@ public class Move
      */
     protected boolean isEnPassant()
     {
-        return enPassant;
+        return PackedMove.is(move, PackedMove.EN_PASSANT);
     }
 
     /**
@@ -722,7 +482,7 @@ public class Move
      */
     protected Square getFrom()
     {
-        return from;
+        return board.getSquare(PackedMove.from(move));
     }
 
     /**
@@ -730,15 +490,15 @@ public class Move
      */
     protected Square getTo()
     {
-        return to;
+        return board.getSquare(PackedMove.to(move));
     }
 
     /**
-     * @return The piece moving
+     * @return The man on the Square from which the piece moves. Only the piece moving while the move is yet to be played.
      */
     protected Man getPiece()
     {
-        return piece;
+        return getFrom().getPiece();
     }
 
     /**
@@ -746,23 +506,22 @@ public class Move
      */
     protected Square getRookSquare()
     {
-        return rookSquare;
+        Castle castle = getCastle();
+        if (castle == Castle.NO)
+        {
+            return null;
+        }
+        int from = PackedMove.from(move);
+        return board.getSquare(castle == Castle.KING ? from + 3 : from - 4);
     }
 
     /**
-     * @return The character representing the piece to which a pawn is promoting
+     * @return The character representing the piece to which a pawn is promoting, or 0 if the move is not a promotion
      */
     protected char getPromotionPiece()
     {
-        return promotionPiece;
-    }
-
-    /**
-     * @return The piece being captured by the moving piece
-     */
-    protected Man getTakePiece()
-    {
-        return takePiece;
+        int promotion = PackedMove.promotion(move);
+        return promotion == Position.EMPTY ? 0 : Position.charOf(promotion);
     }
 
     /**
@@ -770,12 +529,12 @@ public class Move
      */
     protected boolean isCapture()
     {
-        return takes;
+        return PackedMove.is(move, PackedMove.CAPTURE);
     }
 
     /**
      * Overrides the .equals() method of all Objects.
-     * Two moves are equal if they occur on the same board, moving the same piece from the same square to the same square.
+     * Two moves are equal if they occur on the same board and are the same packed move, regardless of notation.
      */
     @Override
     public boolean equals(Object obj)
@@ -785,19 +544,16 @@ public class Move
             return false;
         }
         Move m = (Move) obj;
-        if (board != m.getBoard())
-        {
-            return false;
-        }
-        if (to != m.getTo())
-        {
-            return false;
-        }
-        if (from != m.getFrom())
-        {
-            return false;
-        }
-        return true;
+        return board == m.getBoard() && PackedMove.same(move, m.getCode());
+    }
+
+    /**
+     * @return A hash code consistent with .equals()
+     */
+    @Override
+    public int hashCode()
+    {
+        return move & 0x7FFF; // The from, to, and promotion bits
     }
 
     /**
@@ -805,15 +561,17 @@ public class Move
      */
     protected void makeCheck()
     {
-        san = san + "+";
+        move |= PackedMove.CHECK;
+        san = null;
     }
 
     /**
-     * Adds the checkmate suffix to the notation of the move
+     * Replaces the check suffix of the notation of the move with the checkmate suffix
      */
     protected void makeCheckmate()
     {
-        san = san.substring(0, san.length() - 1) + "#";
+        move |= PackedMove.CHECKMATE;
+        san = null;
     }
 
     /**
@@ -821,6 +579,6 @@ public class Move
      */
     protected Side getMoverSide()
     {
-        return piece.getColor();
+        return Position.sideOf(PackedMove.color(move));
     }
 }
@@ -0,0 +1,251 @@
+public final class MoveGenerator
+{
+    public static final int MAX_MOVES = 256; // More than the number of legal moves in any reachable position
+
+    private MoveGenerator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param p A position
+     * @return The mask of all pieces giving check to the side to move in P
+     */
+    public static long checkers(Position p)
+    {
+        int us = p.getSideToMove();
+        return p.attackersOf(p.getKingSquare(us), us ^ 1, p.getOccupied());
+    }
+
+    /**
+     * @param p A position
+     * @return The mask of all pieces of the side to move in P that are absolutely pinned to their own king
+     */
+    public static long pinned(Position p)
+    {
+        int us = p.getSideToMove();
+        int them = us ^ 1;
+        int king = p.getKingSquare(us);
+        long occ = p.getOccupied();
+
+        long snipers = (Bitboard.rookAttacks(king, 0) & (p.getPieces(them, Position.ROOK) | p.getPieces(them, Position.QUEEN)))
+                     | (Bitboard.bishopAttacks(king, 0) & (p.getPieces(them, Position.BISHOP) | p.getPieces(them, Position.QUEEN)));
+        long pinned = 0;
+        while (snipers != 0)
+        {
+            long blockers = Bitboard.BETWEEN[king][Bitboard.lsb(snipers)] & occ;
+            if (Long.bitCount(blockers) == 1)
+            {
+                pinned |= blockers & p.getColor(us);
+            }
+            snipers &= snipers - 1;
+        }
+        return pinned;
+    }
+
+    /**
+     * Writes every legal move of the side to move in P into MOVES, starting at index 0.
+     *
+     * Checkers and pins are found once up front. Every non-king move must then land in the evasion mask (anywhere not
+     * occupied by a friendly piece when not in check, the checker or a square between it and the king in single check,
+     * nowhere in double check), and a pinned piece must stay on the line through its king and pinner. King moves are
+     * tested against the attacks of the other side with the king lifted off the board, so it cannot step back along
+     * the line of a slider checking it.
+     *
+     * @param p A position
+     * @param moves A buffer of at least MAX_MOVES packed moves
+     * @return The number of legal moves written
+     * @see PackedMove
+     */
+    public static int generateLegalMoves(Position p, int[] moves)
+    {
+        int us = p.getSideToMove();
+        int them = us ^ 1;
+        int king = p.getKingSquare(us);
+        long own = p.getColor(us);
+        long enemies = p.getColor(them);
+        long occ = p.getOccupied();
+        long checkers = checkers(p);
+        long pinned = pinned(p);
+        int n = 0;
+
+        // King moves
+        int kingPiece = Position.pieceOf(us, Position.KING);
+        long kingless = occ & ~Bitboard.bit(king);
+        long targets = Bitboard.KING_ATTACKS[king] & ~own;
+        while (targets != 0)
+        {
+            int to = Bitboard.lsb(targets);
+            if (p.attackersOf(to, them, kingless) == 0)
+            {
+                moves[n++] = PackedMove.of(kingPiece, king, to, 0, (enemies & Bitboard.bit(to)) != 0 ? PackedMove.CAPTURE : 0);
+            }
+            targets &= targets - 1;
+        }
+
+        // Only the king can move out of double check
+        if (Long.bitCount(checkers) > 1)
+        {
+            return n;
+        }
+
+        long evasions = checkers == 0 ? ~own : checkers | Bitboard.BETWEEN[king][Bitboard.lsb(checkers)];
+
+        // Castling, which is never legal out of check
+        if (checkers == 0)
+        {
+            int rights = p.getCastlingRights();
+            int oo = us == Position.WHITE ? Position.WHITE_OO : Position.BLACK_OO;
+            int ooo = us == Position.WHITE ? Position.WHITE_OOO : Position.BLACK_OOO;
+            if ((rights & oo) != 0 && (occ & (Bitboard.bit(king + 1) | Bitboard.bit(king + 2))) == 0
+                    && !p.isAttacked(king + 1, them) && !p.isAttacked(king + 2, them))
+            {
+                moves[n++] = PackedMove.of(kingPiece, king, king + 2, 0, PackedMove.CASTLE);
+            }
+            if ((rights & ooo) != 0 && (occ & (Bitboard.bit(king - 1) | Bitboard.bit(king - 2) | Bitboard.bit(king - 3))) == 0
+                    && !p.isAttacked(king - 1, them) && !p.isAttacked(king - 2, them))
+            {
+                moves[n++] = PackedMove.of(kingPiece, king, king - 2, 0, PackedMove.CASTLE);
+            }
+        }
+
+        // Knights, bishops, rooks, and queens
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++)
+        {
+            int piece = Position.pieceOf(us, type);
+            long froms = p.getPieces(us, type);
+            while (froms != 0)
+            {
+                int from = Bitboard.lsb(froms);
+                long tos = p.attacksFrom(from) & ~own & evasions;
+                if ((pinned & Bitboard.bit(from)) != 0)
+                {
+                    tos &= Bitboard.LINE[king][from];
+                }
+                while (tos != 0)
+                {
+                    int to = Bitboard.lsb(tos);
+                    moves[n++] = PackedMove.of(piece, from, to, 0, (enemies & Bitboard.bit(to)) != 0 ? PackedMove.CAPTURE : 0);
+                    tos &= tos - 1;
+                }
+                froms &= froms - 1;
+            }
+        }
+
+        // Pawns
+        int forward = us == Position.WHITE ? 8 : -8;
+        long startRank = us == Position.WHITE ? Bitboard.RANK_2 : Bitboard.RANK_7;
+        long lastRank = us == Position.WHITE ? Bitboard.RANK_8 : Bitboard.RANK_1;
+        int ep = p.getEpSquare();
+        int pawn = Position.pieceOf(us, Position.PAWN);
+        long pawns = p.getPieces(us, Position.PAWN);
+        while (pawns != 0)
+        {
+            int from = Bitboard.lsb(pawns);
+            long line = (pinned & Bitboard.bit(from)) != 0 ? Bitboard.LINE[king][from] : ~0L;
+
+            long tos = 0;
+            int single = from + forward;
+            if ((occ & Bitboard.bit(single)) == 0)
+            {
+                tos |= Bitboard.bit(single);
+                int dbl = single + forward;
+                if ((startRank & Bitboard.bit(from)) != 0 && (occ & Bitboard.bit(dbl)) == 0 && (evasions & line & Bitboard.bit(dbl)) != 0)
+                {
+                    moves[n++] = PackedMove.of(pawn, from, dbl, 0, PackedMove.DOUBLE_PUSH);
+                }
+            }
+            tos |= Bitboard.PAWN_ATTACKS[us][from] & enemies;
+            tos &= evasions & line;
+
+            while (tos != 0)
+            {
+                int to = Bitboard.lsb(tos);
+                int flags = (enemies & Bitboard.bit(to)) != 0 ? PackedMove.CAPTURE : 0;
+                if ((lastRank & Bitboard.bit(to)) != 0)
+                {
+                    for (int promotion = Position.QUEEN; promotion >= Position.KNIGHT; promotion--)
+                    {
+                        moves[n++] = PackedMove.of(pawn, from, to, promotion, flags);
+                    }
+                }
+                else
+                {
+                    moves[n++] = PackedMove.of(pawn, from, to, 0, flags);
+                }
+                tos &= tos - 1;
+            }
+
+            // En passant removes two pawns from their squares at once, so it is tested directly against the sliders
+            if (ep != -1 && (Bitboard.PAWN_ATTACKS[us][from] & Bitboard.bit(ep)) != 0)
+            {
+                int captured = ep - forward;
+                long after = (occ & ~Bitboard.bit(from) & ~Bitboard.bit(captured)) | Bitboard.bit(ep);
+                boolean resolves = checkers == 0 || (checkers & Bitboard.bit(captured)) != 0 || (evasions & Bitboard.bit(ep)) != 0;
+                if (resolves
+                        && (Bitboard.rookAttacks(king, after) & (p.getPieces(them, Position.ROOK) | p.getPieces(them, Position.QUEEN))) == 0
+                        && (Bitboard.bishopAttacks(king, after) & (p.getPieces(them, Position.BISHOP) | p.getPieces(them, Position.QUEEN))) == 0)
+                {
+                    moves[n++] = PackedMove.of(pawn, from, ep, 0, PackedMove.CAPTURE | PackedMove.EN_PASSANT);
+                }
+            }
+
+            pawns &= pawns - 1;
+        }
+
+        return n;
+    }
+
+    /**
+     * Sets FILE_NEEDED and RANK_NEEDED on every knight, bishop, rook, and queen move among the first N of MOVES that
+     * shares its destination with a move of another piece of the same type. The file is enough unless that other
+     * piece stands on the same file, then the rank unless it also stands on the same rank, then both.
+     *
+     * @param moves Packed legal moves, all from the same position
+     * @param n The number of moves in MOVES
+     * @see PackedMove#toSAN(int)
+     */
+    public static void markDisambiguation(int[] moves, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            int type = PackedMove.type(moves[i]);
+            if (type == Position.PAWN || type == Position.KING)
+            {
+                continue;
+            }
+
+            int from = PackedMove.from(moves[i]);
+            int to = PackedMove.to(moves[i]);
+            boolean ambiguous = false;
+            boolean sameFile = false;
+            boolean sameRank = false;
+            for (int j = 0; j < n; j++)
+            {
+                int other = PackedMove.from(moves[j]);
+                if (other != from && PackedMove.to(moves[j]) == to && PackedMove.type(moves[j]) == type)
+                {
+                    ambiguous = true;
+                    sameFile |= Bitboard.fileOf(other) == Bitboard.fileOf(from);
+                    sameRank |= Bitboard.rankOf(other) == Bitboard.rankOf(from);
+                }
+            }
+
+            if (ambiguous)
+            {
+                if (!sameFile)
+                {
+                    moves[i] |= PackedMove.FILE_NEEDED;
+                }
+                else if (!sameRank)
+                {
+                    moves[i] |= PackedMove.RANK_NEEDED;
+                }
+                else
+                {
+                    moves[i] |= PackedMove.FILE_NEEDED | PackedMove.RANK_NEEDED;
+                }
+            }
+        }
+    }
+}
@@ -1,53 +1,65 @@
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Map;
 
 public class MoveTreeNode
 {
-    private final boolean root; // True if the node is the root of the tree. False otherwise.
-    private final String move; // The SAN of the move of the node
-    private final MoveTreeNode parent; // The parent of the node
-    private final ArrayList<MoveTreeNode> children; // List of children of the node
-    private final FEN fen;
+    /*
+    A node of a move tree, which is a view of one node of a MoveTreeStore. The store holds everything about the node,
+    so the object only knows where to look, and is made only when the node is asked for. Whatever is done through the
+    object is done to the store, so it is seen by every other object of the same tree.
+     */
+
+    private final MoveTreeStore store; // The tree the node is in
+    private final int index; // The index of the node in STORE
 
     /**
-     * If the root node (indicated by a FEN String in place of a SAN), set the boolean root to true, and the non-list variables to null.
-     * Otherwise, set the boolean root to false, and initialize the non-list variables as specified by the parameters.
-     * In either case, initialize CHILDREN to be empty.
+     * Creates the object of node I of S
      *
-     * @param san The SAN of the move of the node
-     * @param p The parent of the node
-     * @param b The board for which the move tree exists
-     * @throws InvalidFENException @see
-     * @throws InvalidSquareException @see
-     * @see FEN#FEN(String, Board)
+     * @param s A compact move tree
+     * @param i The index of a node of S
+     * @see MoveTreeStore#getNode(int)
      */
-    public MoveTreeNode(String san, MoveTreeNode p, Board b) throws InvalidFENException, InvalidSquareException
+    protected MoveTreeNode(MoveTreeStore s, int i)
     {
-        if (FEN.isValidFEN(san))
-        {
-            root = true;
-            move = null;
-            parent = null;
-            fen = new FEN(san, b);
-        }
-        else
-        {
-            root = false;
-            move = san;
-            parent = p;
-            fen = null;
-        }
-        children = new ArrayList<>();
+        store = s;
+        index = i;
+    }
+
+    /**
+     * @return The tree the node is in
+     */
+    protected MoveTreeStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * @return The index of the node in its store
+     */
+    protected int getIndex()
+    {
+        return index;
     }
 
     /**
-     * Adds CHILD to the children list of this node
+     * Adds CHILD to the end of the children list of this node. A child from this tree is moved, and must no longer be
+     * part of the tree; a child from another tree is copied with its subtree, and the other tree is left as it was.
      *
      * @param child A node to be added to the children list of this node
+     * @see MoveTreeStore#move(int, int)
+     * @see MoveTreeStore#copy(int, MoveTreeStore, int)
      */
     protected void addChild(MoveTreeNode child)
     {
-        children.add(child);
+        if (child.store == store)
+        {
+            store.move(index, child.index);
+        }
+        else
+        {
+            store.copy(index, child.store, child.index);
+        }
     }
 
     /**
@@ -55,7 +67,8 @@ public class MoveTreeNode
      */
     protected MoveTreeNode getParent()
     {
-        return parent;
+        int p = store.getParent(index);
+        return p == MoveTreeStore.NONE ? null : store.getNode(p);
     }
 
     /**
@@ -65,7 +78,7 @@ public class MoveTreeNode
      */
     @Override
     public String toString() {
-        return move;
+        return getMove();
     }
 
     /**
@@ -86,35 +99,51 @@ public class MoveTreeNode
         }
         MoveTreeNode n = (MoveTreeNode) obj;
 
-        if (root != n.isRoot())
+        if (isRoot() != n.isRoot())
         {
             return false;
         }
 
-        if (root)
+        if (isRoot())
         {
-            return fen.equals(n.fen);
+            return getFen().equals(n.getFen());
         }
         else
         {
-            return move.equals(n.move) && getRoot().equals(n.getRoot());
+            return getMove().equals(n.getMove()) && store.getFen().equals(n.store.getFen());
         }
     }
 
+    /**
+     * Overrides the hashCode() method of all objects to agree with equals()
+     *
+     * @return A hash of the FEN if ROOT, of the move and the starting position otherwise
+     */
+    @Override
+    public int hashCode()
+    {
+        return isRoot() ? getFen().hashCode() : getMove().hashCode() * 31 + store.getFen().hashCode();
+    }
+
     /**
      * @return The SAN of the move
      */
     protected String getMove()
     {
-        return move;
+        return store.getMove(index);
     }
 
     /**
-     * @return The list of children of the node
+     * @return A new list of the children of the node, in order
      */
     protected ArrayList<MoveTreeNode> getChildren()
     {
-        return children;
+        ArrayList<MoveTreeNode> ret = new ArrayList<>();
+        for (int c = store.getFirstChild(index); c != MoveTreeStore.NONE; c = store.getNextSibling(c))
+        {
+            ret.add(store.getNode(c));
+        }
+        return ret;
     }
 
     /**
@@ -123,58 +152,36 @@ public class MoveTreeNode
      */
     protected MoveTreeNode getChild(int i)
     {
-        if (i < children.size() && i >= 0)
+        if (i < 0)
         {
-            return children.get(i);
+            return null;
         }
-        else
+        int c = store.getFirstChild(index);
+        for (int j = 0; j < i && c != MoveTreeStore.NONE; j++)
         {
-            return null;
+            c = store.getNextSibling(c);
         }
+        return c == MoveTreeStore.NONE ? null : store.getNode(c);
     }
 
     /**
-     * @param san A move notated in SAN
-     * @return The node's child with move SAN if it exists, null otherwise
+     * @param san A move notated in SAN, without a check or checkmate suffix
+     * @return The node's first child with move SAN (ignoring the child's check or checkmate suffix) if it exists, null
+     * otherwise
      */
     protected MoveTreeNode getChild(String san)
     {
-        for (MoveTreeNode n : children)
-        {
-            String s = n.getMove();
-            char c = s.charAt(s.length() - 1);
-            if (c == '+' || c == '#')
-            {
-                s = s.substring(0, s.length() - 1);
-            }
-            if (s.equals(san))
-            {
-                return n;
-            }
-        }
-        return null;
+        int c = store.findChild(index, san);
+        return c == MoveTreeStore.NONE ? null : store.getNode(c);
     }
 
     /**
-     * @param san A move notated in SAN
+     * @param san A move notated in SAN, without a check or checkmate suffix
      * @return True if one of the node's children is that move, false otherwise
      */
     protected boolean isChild(String san)
     {
-        for (MoveTreeNode n : children)
-        {
-            String s = n.getMove();
-            char c = s.charAt(s.length() - 1);
-            if (c == '+' || c == '#')
-            {
-                s = s.substring(0, s.length() - 1);
-            }
-            if (s.equals(san))
-            {
-                return true;
-            }
-        }
-        return false;
+        return store.findChild(index, san) != MoveTreeStore.NONE;
     }
 
     /**
@@ -182,113 +189,128 @@ public class MoveTreeNode
      */
     protected FEN getFen()
     {
-        return fen;
+        return isRoot() ? store.getFen() : null;
     }
 
     /**
-     * @return True if the node is a root node, false otherwise
+     * @return The tag pairs of the game, by name in the order they were set. Empty if not ROOT.
      */
-    public boolean isRoot()
+    protected Map<String, String> getTags()
     {
-        return root;
+        return isRoot() ? store.getTags() : Collections.emptyMap();
     }
 
     /**
-     * @return The root node of this node's tree
+     * @param name The name of a tag
+     * @return The value of the tag NAME, or null if the game has no such tag
      */
-    protected MoveTreeNode getRoot()
+    protected String getTag(String name)
     {
-        return (root ? this : parent.getRoot());
+        return getTags().get(name);
     }
 
     /**
-     * Pairs off equal children of NODE1 and NODE2 into two-element arrays, then adds all unpaired children to arrays respective to their parents.
-     * Puts all arrays in a list and returns.
-     *
-     * @param node1 A MoveTreeNode
-     * @param node2 A MoveTreeNode
-     * @return An ArrayList of MoveTreeNode arrays. The first n - 2 are two-element arrays of equal pairs. The penultimate is an array of all unpaired
-     * children of NODE1 and the last is an array of all unpaired children of NODE2.
+     * @param name The name of a tag
+     * @param value The value of the tag NAME, replacing any it had
      */
-    protected static ArrayList<MoveTreeNode[]> pairChildren(MoveTreeNode node1, MoveTreeNode node2)
+    protected void setTag(String name, String value)
     {
-        ArrayList<MoveTreeNode[]> ret = new ArrayList<>();
+        assert isRoot();
 
-        ArrayList<MoveTreeNode> c1 = node1.getChildren();
-        ArrayList<MoveTreeNode> c2 = node2.getChildren();
+        store.getTags().put(name, value);
+    }
 
-        HashMap<MoveTreeNode, Integer> found1 = new HashMap<>();
-        HashMap<MoveTreeNode, Integer> found2 = new HashMap<>();
+    /**
+     * @return True if the node is a root node, false otherwise
+     */
+    public boolean isRoot()
+    {
+        return index == 0;
+    }
 
-        HashMap<MoveTreeNode, Integer> exists1 = new HashMap<>();
-        HashMap<MoveTreeNode, Integer> exists2 = new HashMap<>();
+    /**
+     * @return The root node of this node's tree
+     */
+    protected MoveTreeNode getRoot()
+    {
+        return store.getRoot();
+    }
 
-        for (MoveTreeNode n1 : c1)
-        {
-            int count = 1;
-            for (MoveTreeNode n2 : c2)
-            {
-                if (n1.equals(n2))
-                {
-                    if (count > found2.getOrDefault(n2, 0))
-                    {
-                        ret.add(new MoveTreeNode[] {n1, n2});
-                        found1.put(n1, found1.getOrDefault(n1, 0) + 1);
-                        found2.put(n2, found2.getOrDefault(n2, 0) + 1);
-                        break;
-                    }
-                    else
-                    {
-                        count++;
-                    }
-                }
-            }
-            if (!found1.containsKey(n1))
-                found1.put(n1, 0);
-            exists1.put(n1, exists1.getOrDefault(n1, 0) + 1);
-        }
+    /**
+     * @param n A node that is not a root
+     * @return This node's first child with the same move as N (ignoring check and checkmate suffixes) if it exists,
+     * null otherwise
+     */
+    protected MoveTreeNode getMatchingChild(MoveTreeNode n)
+    {
+        int c = store.findChild(index, n.store, n.index);
+        return c == MoveTreeStore.NONE ? null : store.getNode(c);
+    }
 
-        ArrayList<MoveTreeNode> remaining1 = new ArrayList<>();
-        ArrayList<MoveTreeNode> remaining2 = new ArrayList<>();
+    /**
+     * @return The hash of the position after the move (the starting position if ROOT), or 0 if not yet computed
+     * @see Position#getHash()
+     */
+    protected long getHash()
+    {
+        return store.getHash(index);
+    }
 
-        for (MoveTreeNode n1 : c1)
-        {
-            for (int i = 0; i < exists1.get(n1) - found1.get(n1); i++)
-            {
-                remaining1.add(n1);
-            }
-        }
+    /**
+     * @param h The hash of the position after the move (the starting position if ROOT)
+     */
+    protected void setHash(long h)
+    {
+        store.setHash(index, h);
+    }
 
-        for (MoveTreeNode n2 : c2)
-        {
-            exists2.put(n2, exists2.getOrDefault(n2, 0) + 1);
-        }
+    /**
+     * @return The packed move, or PackedMove.NONE if not yet known or if ROOT
+     * @see PackedMove
+     */
+    protected int getCode()
+    {
+        return store.getCode(index);
+    }
 
-        for (MoveTreeNode n2 : c2)
-        {
-            for (int i = 0; i < exists2.get(n2) - (found2.getOrDefault(n2, 0)); i++)
-            {
-                remaining2.add(n2);
-            }
-        }
+    /**
+     * @param c The packed move, as played, so including its check or checkmate flag
+     */
+    protected void setCode(int c)
+    {
+        store.setCode(index, c);
+    }
 
-        ret.add(MoveTreeNode.toArray(remaining1));
-        ret.add(MoveTreeNode.toArray(remaining2));
+    /**
+     * @return The node whose children are the continuations from the position after the move: the node at which that
+     * position was first reached if the move transposes into it, this node otherwise
+     */
+    protected MoveTreeNode getPositionNode()
+    {
+        int p = store.getPositionNode(index);
+        return p == index ? this : store.getNode(p);
+    }
 
-        return ret;
+    /**
+     * @return True if the move transposes into a position first reached at another node, false otherwise
+     */
+    protected boolean isTransposition()
+    {
+        return store.getPositionNode(index) != index;
     }
 
     /**
-     * @param a An ArrayList of MoveTreeNode instances
-     * @return A as an array instead of an ArrayList
+     * Marks the move as transposing into the position of N, and detaches the children of this node, since the
+     * continuations from the position are N's
+     *
+     * @param n The node of the same tree at which the position after the move was first reached
+     * @return The children this node had, in order, for merging into N
      */
-    protected static MoveTreeNode[] toArray(ArrayList<MoveTreeNode> a)
+    protected ArrayList<MoveTreeNode> transposeTo(MoveTreeNode n)
     {
-        MoveTreeNode[] ret = new MoveTreeNode[a.size()];
-        for (int i = 0; i < a.size(); i++)
-        {
-            ret[i] = a.get(i);
-        }
+        ArrayList<MoveTreeNode> ret = getChildren();
+        store.setPositionNode(index, n.index);
+        store.detachChildren(index);
         return ret;
     }
 
@@ -297,10 +319,13 @@ public class MoveTreeNode
      */
     protected boolean isLinearTree()
     {
-        if (children.size() == 0)
+        for (int n = index; n != MoveTreeStore.NONE; n = store.getFirstChild(n))
         {
-            return true;
+            if (store.getChildCount(n) > 1)
+            {
+                return false;
+            }
         }
-        return children.size() == 1 && getChild(0).isLinearTree();
+        return true;
     }
 }
@@ -0,0 +1,657 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+public class MoveTreeStore
+{
+    /*
+    A move tree kept in parallel arrays indexed by node, with the root at index 0. The children of a node are a linked
+    list, from FIRSTCHILDREN through NEXTSIBLINGS, in the order they were added. Each distinct SAN is stored once, in
+    the dictionary, and nodes refer to it by its index there. Everything known about a node is in the arrays, so
+    merging, collapsing transpositions, replaying, and writing all work on node indices and never make an object per
+    node.
+
+    The tree is read through MoveTreeNode objects, which are only made for the nodes asked for, so a tree that is only
+    partly walked (as in practice, which follows one line at a time) only ever has objects for that part.
+
+    Moving a child to another parent leaves it in the sibling list of its old parent, so a node is only moved once it
+    has been cut off from the tree, as the children of a transposition are.
+
+    Children are looked up by key, the index in KEYS of their SAN without its check or checkmate suffix. Most nodes
+    have one or two children, which are quicker to scan than to hash, so only a node with more than INDEX_THRESHOLD
+    children gets an index from each key to its first child with it.
+
+    A tree opened from a repertoire file is read from the file, node by node as it is asked for, and the arrays are
+    only filled, with the whole tree, when it is first changed. Nodes have the same indices in both, so node objects
+    made before stay valid. Hashes are not in the file, so they are not known until the tree is replayed.
+     */
+
+    public static final int NONE = -1; // No node
+
+    private static final int INDEX_THRESHOLD = 4; // The most children a node looks through by scanning, without an index
+
+    private final FEN fen; // The starting position of the tree
+    private final LinkedHashMap<String, String> tags; // The tag pairs of the game, in the order read
+    private int size; // The number of nodes
+
+    private int[] parents; // The parent of each node, or NONE for the root
+    private int[] firstChildren; // The first child of each node, or NONE
+    private int[] lastChildren; // The last child of each node, or NONE, to add children in constant time
+    private int[] nextSiblings; // The next child of the parent of each node, or NONE
+    private int[] childCounts; // The number of children of each node
+    private int[] moves; // The index in the dictionary of the SAN of each node, or NONE for the root
+    private int[] codes; // The packed move of each node, or PackedMove.NONE if not known
+    private int[] positionNodes; // The node holding the continuations after each node if it transposes, or NONE
+    private long[] hashes; // The hash of the position after each node, or 0 if not known
+
+    private final ArrayList<String> dictionary; // Each distinct SAN
+    private final HashMap<String, Integer> ids; // The index in the dictionary of each SAN
+    private int[] keyIds; // The index in KEYS of each SAN of the dictionary without its check or checkmate suffix
+    private final ArrayList<String> keys; // Each distinct SAN without its check or checkmate suffix
+    private final HashMap<String, Integer> keyIndex; // The index in KEYS of each key
+
+    private final HashMap<Integer, HashMap<Integer, Integer>> childIndices; // The first child with each key, by node
+    private MoveTreeStore translated; // The store the keys here were last looked up in, or null
+    private int[] translations; // The key in TRANSLATED of each key here, or NONE if not yet looked up
+
+    private HashMap<Integer, MoveTreeNode> nodes; // The node object of each node that has been asked for, or null
+
+    private Repertoire source; // The file the tree is read from until it is changed, or null once it is in the arrays
+    private HashMap<Integer, Integer> sourceIds; // The index in the dictionary of each packed move read from SOURCE
+
+    /**
+     * Creates a tree of only a root
+     *
+     * @param f The starting position of the tree
+     */
+    public MoveTreeStore(FEN f)
+    {
+        fen = f;
+        tags = new LinkedHashMap<>();
+        size = 0;
+
+        parents = new int[64];
+        firstChildren = new int[64];
+        lastChildren = new int[64];
+        nextSiblings = new int[64];
+        childCounts = new int[64];
+        moves = new int[64];
+        codes = new int[64];
+        positionNodes = new int[64];
+        hashes = new long[64];
+
+        dictionary = new ArrayList<>();
+        ids = new HashMap<>();
+        keyIds = new int[16];
+        keys = new ArrayList<>();
+        keyIndex = new HashMap<>();
+        childIndices = new HashMap<>();
+
+        append(NONE, NONE, PackedMove.NONE);
+    }
+
+    /**
+     * Opens the tree of R, which is read from R as it is asked for
+     *
+     * @param r A repertoire file
+     * @throws InvalidFENException if the starting position of R is invalid
+     * @see Repertoire#toTree()
+     */
+    public MoveTreeStore(Repertoire r) throws InvalidFENException
+    {
+        fen = new FEN(r.getFen());
+        tags = new LinkedHashMap<>(r.getTags());
+        size = r.size();
+
+        dictionary = new ArrayList<>();
+        ids = new HashMap<>();
+        keyIds = new int[16];
+        keys = new ArrayList<>();
+        keyIndex = new HashMap<>();
+        childIndices = new HashMap<>();
+
+        source = r;
+        sourceIds = new HashMap<>();
+    }
+
+    /**
+     * Reads the whole tree from SOURCE into the arrays, if it has not been, so it can be changed. Nodes are numbered
+     * breadth first in both, so each is added with the index it had in the file.
+     */
+    private void load()
+    {
+        if (source == null)
+        {
+            return;
+        }
+        Repertoire r = source;
+        source = null;
+
+        size = 0;
+        parents = new int[r.size()];
+        firstChildren = new int[r.size()];
+        lastChildren = new int[r.size()];
+        nextSiblings = new int[r.size()];
+        childCounts = new int[r.size()];
+        moves = new int[r.size()];
+        codes = new int[r.size()];
+        positionNodes = new int[r.size()];
+        hashes = new long[r.size()];
+        append(NONE, NONE, PackedMove.NONE);
+
+        for (int n = 0; n < r.size(); n++)
+        {
+            for (int i = 0; i < r.getChildCount(n); i++)
+            {
+                int c = r.getChild(n, i);
+                add(n, dictionary.get(sourceId(c, r)), r.getMove(c));
+            }
+        }
+        for (int n = 1; n < r.size(); n++)
+        {
+            setPositionNode(n, r.getPositionNode(n));
+        }
+        sourceIds = null;
+    }
+
+    /**
+     * @param n The index of a node of R other than its root
+     * @param r The file the tree is read from
+     * @return The index in the dictionary of the SAN of N, added if it is not there
+     */
+    private int sourceId(int n, Repertoire r)
+    {
+        return sourceIds.computeIfAbsent(r.getMove(n), move -> intern(PackedMove.toSAN(move)));
+    }
+
+    /**
+     * Adds a node as the last child of PARENT
+     *
+     * @param parent The index of a node
+     * @param san The SAN of the move of the new node
+     * @param code The packed move of the new node, or PackedMove.NONE if not known
+     * @return The index of the new node
+     */
+    public int add(int parent, String san, int code)
+    {
+        load();
+
+        int n = append(parent, intern(san), code);
+        move(parent, n);
+        return n;
+    }
+
+    /**
+     * @param san A move notated in SAN
+     * @return The index in the dictionary of SAN, added if it is not there
+     */
+    private int intern(String san)
+    {
+        Integer id = ids.get(san);
+        if (id == null)
+        {
+            id = dictionary.size();
+            dictionary.add(san);
+            ids.put(san, id);
+
+            char c = san.charAt(san.length() - 1);
+            String key = c == '+' || c == '#' ? san.substring(0, san.length() - 1) : san;
+            Integer keyId = keyIndex.get(key);
+            if (keyId == null)
+            {
+                keyId = keys.size();
+                keys.add(key);
+                keyIndex.put(key, keyId);
+            }
+            if (id == keyIds.length)
+            {
+                keyIds = Arrays.copyOf(keyIds, id * 2);
+            }
+            keyIds[id] = keyId;
+        }
+        return id;
+    }
+
+    /**
+     * Appends a node with no children or siblings to the arrays, growing them if full
+     *
+     * @return The index of the new node
+     */
+    private int append(int parent, int move, int code)
+    {
+        if (size == parents.length)
+        {
+            int length = size * 2;
+            parents = Arrays.copyOf(parents, length);
+            firstChildren = Arrays.copyOf(firstChildren, length);
+            lastChildren = Arrays.copyOf(lastChildren, length);
+            nextSiblings = Arrays.copyOf(nextSiblings, length);
+            childCounts = Arrays.copyOf(childCounts, length);
+            moves = Arrays.copyOf(moves, length);
+            codes = Arrays.copyOf(codes, length);
+            positionNodes = Arrays.copyOf(positionNodes, length);
+            hashes = Arrays.copyOf(hashes, length);
+        }
+
+        parents[size] = parent;
+        firstChildren[size] = NONE;
+        lastChildren[size] = NONE;
+        nextSiblings[size] = NONE;
+        childCounts[size] = 0;
+        moves[size] = move;
+        codes[size] = code;
+        positionNodes[size] = NONE;
+        hashes[size] = 0;
+        return size++;
+    }
+
+    /**
+     * Moves N, with its subtree, to the end of the children of PARENT. The sibling list N was in is left as it was, so
+     * the old parent of N must already be cut off from the tree, and the next sibling of N must be read before. A new
+     * node is moved from nowhere.
+     *
+     * @param parent The index of a node
+     * @param n The index of a node whose parent is no longer in the tree
+     */
+    public void move(int parent, int n)
+    {
+        load();
+
+        parents[n] = parent;
+        nextSiblings[n] = NONE;
+        if (lastChildren[parent] == NONE)
+        {
+            firstChildren[parent] = n;
+        }
+        else
+        {
+            nextSiblings[lastChildren[parent]] = n;
+        }
+        lastChildren[parent] = n;
+
+        int count = ++childCounts[parent];
+        if (count > INDEX_THRESHOLD)
+        {
+            HashMap<Integer, Integer> index = childIndices.get(parent);
+            if (index == null)
+            {
+                index = new HashMap<>();
+                childIndices.put(parent, index);
+                for (int c = firstChildren[parent]; c != NONE; c = nextSiblings[c])
+                {
+                    index.putIfAbsent(keyIds[moves[c]], c);
+                }
+            }
+            else
+            {
+                index.putIfAbsent(keyIds[moves[n]], n);
+            }
+        }
+    }
+
+    /**
+     * Copies node N of S, with its subtree, to the end of the children of PARENT. The moves, packed moves, and hashes
+     * are copied, but not transpositions, as the nodes they lead to may not be copied; merged trees have their
+     * transpositions collapsed again.
+     *
+     * @param parent The index of a node of this tree
+     * @param s Another tree
+     * @param n The index of a node of S other than its root
+     * @return The index of the copy of N
+     */
+    public int copy(int parent, MoveTreeStore s, int n)
+    {
+        load();
+
+        int copy = add(parent, s.getMove(n), s.getCode(n));
+        hashes[copy] = s.getHash(n);
+
+        // Copied depth first, with the node of S each copy was made from and the copy kept in pairs on a stack
+        int[] stack = new int[32];
+        int top = 0;
+        stack[top++] = n;
+        stack[top++] = copy;
+        while (top > 0)
+        {
+            int to = stack[--top];
+            int from = stack[--top];
+            for (int c = s.getFirstChild(from); c != NONE; c = s.getNextSibling(c))
+            {
+                int d = add(to, s.getMove(c), s.getCode(c));
+                hashes[d] = s.getHash(c);
+                if (s.getFirstChild(c) != NONE)
+                {
+                    if (top + 2 > stack.length)
+                    {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = c;
+                    stack[top++] = d;
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Cuts the children of N off from it, along with their subtrees. They still form a sibling list, from the child
+     * returned, so they can be moved elsewhere.
+     *
+     * @param n The index of a node
+     * @return The index of the first child N had, or NONE
+     */
+    public int detachChildren(int n)
+    {
+        load();
+
+        int first = firstChildren[n];
+        firstChildren[n] = NONE;
+        lastChildren[n] = NONE;
+        childCounts[n] = 0;
+        childIndices.remove(n);
+        return first;
+    }
+
+    /**
+     * @param n The index of a node
+     * @param key A move notated in SAN, without a check or checkmate suffix
+     * @return The index of the first child of N whose move is KEY, ignoring its check or checkmate suffix, or NONE
+     */
+    public int findChild(int n, String key)
+    {
+        if (source != null)
+        {
+            for (int c = getFirstChild(n); c != NONE; c = getNextSibling(c))
+            {
+                if (keys.get(keyIds[sourceId(c, source)]).equals(key))
+                {
+                    return c;
+                }
+            }
+            return NONE;
+        }
+
+        Integer keyId = keyIndex.get(key);
+        return keyId == null ? NONE : findChild(n, keyId);
+    }
+
+    /**
+     * Finds the child of N with the same move as C of S, without looking up the SAN of C. Each key of S is looked up
+     * here once, and S keeps what it was for as long as this is the store it is matched against, as it is throughout a
+     * merge. S, not this store, keeps it, since S is usually thrown away after.
+     *
+     * @param n The index of a node
+     * @param s A tree, possibly this one
+     * @param c The index of a node of S other than its root
+     * @return The index of the first child of N whose move is that of C, ignoring check and checkmate suffixes, or NONE
+     */
+    public int findChild(int n, MoveTreeStore s, int c)
+    {
+        if (source != null || s.source != null)
+        {
+            return findChild(n, s.getKey(c));
+        }
+
+        int key = s.keyIds[s.moves[c]];
+        if (s != this)
+        {
+            key = s.translate(key, this);
+        }
+        return key == NONE ? NONE : findChild(n, key);
+    }
+
+    /**
+     * @param key The index in KEYS of a move
+     * @param t Another tree
+     * @return The index in the keys of T of KEY, or NONE if T does not have it. A key T does not have is looked up
+     * again next time, since T may have been given it since.
+     */
+    private int translate(int key, MoveTreeStore t)
+    {
+        if (translated != t)
+        {
+            translated = t;
+            translations = new int[0];
+        }
+        if (key >= translations.length)
+        {
+            int length = translations.length;
+            translations = Arrays.copyOf(translations, keys.size());
+            Arrays.fill(translations, length, translations.length, NONE);
+        }
+        if (translations[key] == NONE)
+        {
+            Integer keyId = t.keyIndex.get(keys.get(key));
+            if (keyId != null)
+            {
+                translations[key] = keyId;
+            }
+        }
+        return translations[key];
+    }
+
+    /**
+     * @param n The index of a node
+     * @param key The index in KEYS of a move
+     * @return The index of the first child of N whose move is KEY, or NONE
+     */
+    private int findChild(int n, int key)
+    {
+        if (childCounts[n] > INDEX_THRESHOLD)
+        {
+            Integer c = childIndices.get(n).get(key);
+            return c == null ? NONE : c;
+        }
+        for (int c = firstChildren[n]; c != NONE; c = nextSiblings[c])
+        {
+            if (keyIds[moves[c]] == key)
+            {
+                return c;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * @param n The index of a node
+     * @param p The index of the node holding the continuations from the position after the move of N
+     * @see MoveTreeNode#transposeTo(MoveTreeNode)
+     */
+    public void setPositionNode(int n, int p)
+    {
+        load();
+
+        positionNodes[n] = n == p ? NONE : p;
+    }
+
+    /**
+     * @return The number of nodes, including the root and any cut off from the tree
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The starting position of the tree
+     */
+    public FEN getFen()
+    {
+        return fen;
+    }
+
+    /**
+     * @return The tag pairs of the game, by name in the order they were set, which may be changed through it
+     */
+    public LinkedHashMap<String, String> getTags()
+    {
+        return tags;
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The index of the parent of N, or -1 for the root
+     */
+    public int getParent(int n)
+    {
+        if (source != null)
+        {
+            return source.getParent(n);
+        }
+        return parents[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The index of the first child of N, or -1 if it has none
+     */
+    public int getFirstChild(int n)
+    {
+        if (source != null)
+        {
+            return source.getChildCount(n) == 0 ? NONE : source.getChild(n, 0);
+        }
+        return firstChildren[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The index of the next child of the parent of N, or -1 if N is the last
+     */
+    public int getNextSibling(int n)
+    {
+        if (source != null)
+        {
+            // Siblings are contiguous in the file, so the next is the next node, unless N is the last of them
+            int p = source.getParent(n);
+            return p == NONE || n == source.getChild(p, source.getChildCount(p) - 1) ? NONE : n + 1;
+        }
+        return nextSiblings[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The number of children of N
+     */
+    public int getChildCount(int n)
+    {
+        if (source != null)
+        {
+            return source.getChildCount(n);
+        }
+        return childCounts[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The SAN of the move of N, shared by every node with the same SAN, or null for the root
+     */
+    public String getMove(int n)
+    {
+        if (source != null)
+        {
+            return n == 0 ? null : dictionary.get(sourceId(n, source));
+        }
+        return moves[n] == NONE ? null : dictionary.get(moves[n]);
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The SAN of the move of N without any check or checkmate suffix, or null for the root
+     */
+    public String getKey(int n)
+    {
+        if (source != null)
+        {
+            return n == 0 ? null : keys.get(keyIds[sourceId(n, source)]);
+        }
+        return moves[n] == NONE ? null : keys.get(keyIds[moves[n]]);
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The packed move of N, or PackedMove.NONE if not known
+     */
+    public int getCode(int n)
+    {
+        if (source != null)
+        {
+            return source.getMove(n);
+        }
+        return codes[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @param c The packed move of N, as played, so including its check or checkmate flag
+     */
+    public void setCode(int n, int c)
+    {
+        load();
+
+        codes[n] = c;
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The hash of the position after the move of N (the starting position for the root), or 0 if not known
+     */
+    public long getHash(int n)
+    {
+        if (source != null)
+        {
+            return 0;
+        }
+        return hashes[n];
+    }
+
+    /**
+     * @param n The index of a node
+     * @param h The hash of the position after the move of N (the starting position for the root)
+     */
+    public void setHash(int n, long h)
+    {
+        load();
+
+        hashes[n] = h;
+    }
+
+    /**
+     * @param n The index of a node
+     * @return The index of the node holding the continuations from the position after the move of N, which is N itself
+     * unless the move transposes
+     */
+    public int getPositionNode(int n)
+    {
+        if (source != null)
+        {
+            return source.getPositionNode(n);
+        }
+        return positionNodes[n] == NONE ? n : positionNodes[n];
+    }
+
+    /**
+     * @return The node object of the root
+     */
+    public MoveTreeNode getRoot()
+    {
+        return getNode(0);
+    }
+
+    /**
+     * Makes the node object of N if it has not been made. Asking for the same node twice gives the same object.
+     *
+     * @param n The index of a node
+     * @return The node object of N
+     * @see MoveTreeNode#MoveTreeNode(MoveTreeStore, int)
+     */
+    public MoveTreeNode getNode(int n)
+    {
+        if (nodes == null)
+        {
+            nodes = new HashMap<>();
+        }
+        return nodes.computeIfAbsent(n, i -> new MoveTreeNode(this, i));
+    }
+}
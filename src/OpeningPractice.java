@@ -8,6 +8,8 @@ public class OpeningPractice
 {
     private static final Set<String> PLAY_AS_WHITE_CHOICES = Set.of("white", "w");
     private static final Set<String> PLAY_AS_BLACK_CHOICES = Set.of("black", "b");
+    private static final int THINK_TIME = 1000; // The milliseconds the computer searches for a move once the line has run out
+    private static final int THREADS = Runtime.getRuntime().availableProcessors(); // The number of threads the computer searches with
 
     // TODO: Add a static data structure that allows me to not have to pick my color
 
@@ -65,13 +67,15 @@ public class OpeningPractice
             try
             {
                 b = new Board();
+                b.setRepetitionDraws(false); // A line may repeat the position and play on
                 pgn = new File(FOLDER_NAME + "/" + files[filenum]);
                 if (!pgn.exists())
                 {
                     System.out.println("That file doesn't exist. Please try again, or type \"qqq\" to quit.\n");
                     continue;
                 }
-                curr = PGNManager.convertPGNToTree(pgn, b);
+                curr = PGNManager.convertPGNToTree(pgn);
+                PGNManager.validate(curr, new Board());
                 try
                 {
                     b.startFromFen(curr.getFen());
@@ -144,15 +148,21 @@ public class OpeningPractice
         StringBuilder sb = new StringBuilder();
         int wrongCount = 0;
         int moveCount = 1;
+        boolean outOfBook = false;
 
         // Player plays
         while (true)
         {
-            // If CURR has no more children, the player wins
+            // If CURR has no more children, the player wins, and may play on against the computer
             int choices = curr.getChildren().size();
-            if (choices == 0)
+            if (choices == 0 && !outOfBook)
             {
-                playerWins(sb.toString());
+                playerWins(sb.toString(), b, sc);
+                outOfBook = true;
+            }
+            if (b.getState() != GameState.IN_PROGRESS)
+            {
+                gameOver(b, sb.toString());
             }
 
             // If it's the player's turn
@@ -192,8 +202,32 @@ public class OpeningPractice
                     wrongCount = 2;
                 }
 
+                // Once the line has run out, any legal move will do
+                if (outOfBook)
+                {
+                    Move m;
+                    try
+                    {
+                        m = new Move(move, b);
+                        b.move(m);
+                    }
+                    catch (Exception e)
+                    {
+                        System.out.println("That is not a legal move. Please try again, type \"qqq\" to quit, or \"rrr\" to start over.\n\n");
+                        continue;
+                    }
+                    if (side == Side.WHITE)
+                    {
+                        sb.append(moveCount).append(". ");
+                    }
+                    sb.append(m).append(' ');
+
+                    System.out.println();
+                    System.out.println(b.seeBoardAs(side));
+                    System.out.println();
+                }
                 // If they played correctly, play the move and continue to end of loop
-                if (curr.isChild(move))
+                else if (curr.isChild(move))
                 {
                     curr = curr.getChild(move);
                     try
@@ -255,6 +289,37 @@ public class OpeningPractice
                     moveCount++;
                 }
             }
+            else if (outOfBook)
+            {
+                // Computer's turn to play, finding its move by search since the line has run out
+                Move m = null;
+                try
+                {
+                    m = new Move(b.search(THINK_TIME, THREADS).getMove(), b);
+                    b.move(m);
+                    if (side == Side.BLACK)
+                    {
+                        sb.append(moveCount).append(". ");
+                    }
+                    sb.append(m).append(' ');
+                }
+                catch (Exception e)
+                {
+                    System.out.printf("The computer's move (%s) caused an exception. The line went %s\n", m, sb.toString());
+                    System.out.println("Error message: " + e.getMessage());
+                    System.exit(1);
+                }
+
+                System.out.println(b.getFen().getFullmoves() + compNumSuffix + m);
+                System.out.println();
+                System.out.println(b.seeBoardAs(side));
+                System.out.println();
+
+                if (side == Side.WHITE)
+                {
+                    moveCount++;
+                }
+            }
             else
             {
                 // Computer's turn to play
@@ -262,7 +327,7 @@ public class OpeningPractice
                 curr = curr.getChild(kidIndex);
                 try
                 {
-                    b.move(new Move(curr.getMove(), b));
+                    b.move(PGNManager.toMove(curr, b));
                     if (side == Side.BLACK)
                     {
                         sb.append(moveCount).append(". ");
@@ -341,15 +406,47 @@ public class OpeningPractice
     }
 
     /**
-     * Congratulate player on winning, then run exit sequence.
+     * Congratulate player on winning. Then, if the game is not over, offer to play on against the computer, and run the
+     * exit sequence if not. Only returns if the player plays on.
+     *
+     * @param line The line played
+     * @param b The board the line was played on
+     * @param sc The scanner of the player's input
      */
-    private static void playerWins(String line)
+    private static void playerWins(String line, Board b, Scanner sc)
     {
         System.out.println("\n\nYou did it! You played the correct line!");
         System.out.println("Just so you remember, the line went: " + line);
         System.out.println();
         System.out.println("Great job! Thanks for playing!");
 
+        if (b.getState() == GameState.IN_PROGRESS)
+        {
+            System.out.print("\nWould you like to keep playing from here against the computer? (y/n) ");
+            String playOn = sc.nextLine().toLowerCase();
+            if (playOn.equals("y") || playOn.equals("yes"))
+            {
+                b.setRepetitionDraws(true);
+                System.out.println();
+                return;
+            }
+        }
+
+        exitSequence();
+    }
+
+    /**
+     * Announce the result of a game played on past the end of the line, then run exit sequence.
+     *
+     * @param b The board the game was played on
+     * @param line The moves played
+     */
+    private static void gameOver(Board b, String line)
+    {
+        GameState gs = b.getState();
+        System.out.println(gs == GameState.DRAW ? "It's a draw!" : (gs == GameState.WHITE_WINS ? "White" : "Black") + " wins!");
+        System.out.println("The game went: " + line);
+
         exitSequence();
     }
 
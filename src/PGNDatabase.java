@@ -0,0 +1,239 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class PGNDatabase
+{
+    // The RegEx pattern of a single tag pair, with the name and the escaped value as groups
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\[\\s*(\\w+)\\s+\"((?:[^\"\\\\]|\\\\.)*)\"\\s*]");
+    // The RegEx pattern of an escaped character in a tag value, with the character as the group
+    private static final Pattern ESCAPE_PATTERN = Pattern.compile("\\\\(.)");
+
+    private final File file; // The PGN file
+    private long[] offsets; // The byte offset in FILE at which each game starts
+    private final ArrayList<Map<String, String>> tags; // The tag pairs of each game, in the order they appear
+    private int size; // The number of games in FILE
+
+    /**
+     * Scans F once, recording where each game starts and its tag pairs. No movetext is parsed until a game is asked
+     * for.
+     *
+     * A game starts at the first tag line after the movetext of the previous game (or at the start of the file). Tag
+     * lines inside comments are not mistaken for the start of a game.
+     *
+     * @param f A PGN file of any number of games, in UTF-8
+     * @throws IOException if F cannot be read
+     */
+    public PGNDatabase(File f) throws IOException
+    {
+        file = f;
+        offsets = new long[16];
+        tags = new ArrayList<>();
+        size = 0;
+
+        try (InputStream in = new FileInputStream(f))
+        {
+            scan(in);
+        }
+    }
+
+    /**
+     * Builds the index from IN, which is read to its end in blocks. Only ASCII bytes are significant to PGN syntax, so
+     * the bytes need no decoding except within tag lines.
+     *
+     * @param in The contents of the file
+     */
+    private void scan(InputStream in) throws IOException
+    {
+        byte[] block = new byte[1 << 16];
+        byte[] tagLine = new byte[256]; // The tag line being read
+        int tagLength = 0; // The number of bytes in TAGLINE
+        long offset = 0; // The offset in the file of the start of BLOCK
+        boolean lineStart = true; // True if the next byte starts a line
+        boolean inComment = false; // True inside a brace comment, which may span lines
+        boolean inTagLine = false; // True inside a line of tags
+        boolean skipLine = false; // True inside a line comment or an escaped line
+        boolean movetext = true; // True if the last game has movetext after its tags, so the next tag starts a new game
+
+        int n;
+        while ((n = in.read(block)) != -1)
+        {
+            // Skip a UTF-8 byte order mark, so a tag on the first line still starts a line
+            int start = offset == 0 && n >= 3 && block[0] == (byte) 0xEF && block[1] == (byte) 0xBB && block[2] == (byte) 0xBF ? 3 : 0;
+            for (int i = start; i < n; i++)
+            {
+                int c = block[i];
+
+                if (inTagLine)
+                {
+                    if (c == '\n')
+                    {
+                        readTags(new String(tagLine, 0, tagLength, StandardCharsets.UTF_8));
+                        inTagLine = false;
+                    }
+                    else
+                    {
+                        if (tagLength == tagLine.length)
+                        {
+                            tagLine = Arrays.copyOf(tagLine, tagLength * 2);
+                        }
+                        tagLine[tagLength++] = (byte) c;
+                    }
+                }
+                else if (skipLine)
+                {
+                    skipLine = c != '\n';
+                }
+                else if (inComment)
+                {
+                    inComment = c != '}';
+                }
+                else if (lineStart && c == '[')
+                {
+                    if (movetext)
+                    {
+                        addGame(offset + i);
+                        movetext = false;
+                    }
+                    tagLine[0] = (byte) c;
+                    tagLength = 1;
+                    inTagLine = true;
+                }
+                else if ((lineStart && c == '%') || c == ';')
+                {
+                    skipLine = true;
+                }
+                else if (c == '{')
+                {
+                    inComment = true;
+                    movetext = true;
+                }
+                else if (c != ' ' && c != '\t' && c != '\r' && c != '\n')
+                {
+                    if (size == 0)
+                    {
+                        // Movetext with no tags before it at all
+                        addGame(offset + i);
+                    }
+                    movetext = true;
+                }
+
+                lineStart = c == '\n';
+            }
+            offset += n;
+        }
+
+        if (inTagLine)
+        {
+            readTags(new String(tagLine, 0, tagLength, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Records a game starting at OFFSET, with no tags yet
+     *
+     * @param offset The byte offset in FILE at which the game starts
+     */
+    private void addGame(long offset)
+    {
+        if (size == offsets.length)
+        {
+            offsets = Arrays.copyOf(offsets, size * 2);
+        }
+        offsets[size++] = offset;
+        tags.add(new LinkedHashMap<>());
+    }
+
+    /**
+     * Adds every tag pair on LINE to the last game
+     *
+     * @param line A line of tag pairs
+     */
+    private void readTags(String line)
+    {
+        Matcher m = TAG_PATTERN.matcher(line);
+        while (m.find())
+        {
+            String value = m.group(2);
+            tags.get(size - 1).put(m.group(1), value.indexOf('\\') < 0 ? value : ESCAPE_PATTERN.matcher(value).replaceAll("$1"));
+        }
+    }
+
+    /**
+     * @return The number of games in the file
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The PGN file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @param i The index of a game, from 0
+     * @return The byte offset in the file at which game I starts
+     */
+    protected long getOffset(int i)
+    {
+        if (i < 0 || i >= size)
+        {
+            throw new IndexOutOfBoundsException("Game " + i + " of " + size);
+        }
+        return offsets[i];
+    }
+
+    /**
+     * @param i The index of a game, from 0
+     * @return The tag pairs of game I, in the order they appear
+     */
+    public Map<String, String> getTags(int i)
+    {
+        getOffset(i);
+        return tags.get(i);
+    }
+
+    /**
+     * @param i The index of a game, from 0
+     * @param name The name of a tag
+     * @return The value of tag NAME of game I, or null if it has none
+     */
+    public String getTag(int i, String name)
+    {
+        return getTags(i).get(name);
+    }
+
+    /**
+     * Parses game I alone, reading the file from where the game starts up to its result
+     *
+     * @param i The index of a game, from 0
+     * @return The root of the move tree of game I
+     * @throws IOException if the file cannot be read
+     * @throws InvalidPGNException if game I is not valid PGN
+     * @see PGNManager#convertPGNToTree(PGNTokenizer)
+     */
+    public MoveTreeNode getGame(int i) throws IOException, InvalidPGNException, InvalidFENException
+    {
+        long offset = getOffset(i);
+        try (PGNTokenizer tokens = new PGNTokenizer(Channels.newReader(FileChannel.open(file.toPath(), StandardOpenOption.READ).position(offset), StandardCharsets.UTF_8)))
+        {
+            return PGNManager.convertPGNToTree(tokens);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+public final class PGNLoader
+{
+    private PGNLoader()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Parses FILES concurrently, at most THREADS at a time, then merges their trees pairwise in rounds, the merges of
+     * each round running concurrently too. The pairs are always neighbours in FILES, so the merged tree is the same as
+     * merging the files one by one in order. Given a Board, collapses the transpositions of the merged tree last.
+     * Has no dependencies on Swing, so it runs the same behind a GUI or from the command line.
+     *
+     * @param files The PGN files to merge, all from the same starting position
+     * @param threads The largest number of threads to parse or merge with
+     * @param b A Board to replay the merged tree on to collapse its transpositions, or null to leave them. Left at the
+     *          starting position.
+     * @param progress Called with each file once it has been parsed, on the thread that parsed it. May be null.
+     * @return The root node of the merged tree
+     * @throws IOException if a file cannot be read
+     * @throws InvalidPGNException if a file is not valid PGN
+     * @throws InterruptedException if interrupted while waiting for a file to be parsed
+     * @throws InvalidMoveException if B is given and a move of the merged tree is illegal
+     * @throws UnsupportedOperationException if the files do not all start from the same position
+     * @see PGNManager#convertPGNToTree(File)
+     * @see PGNManager#mergeTrees(ArrayList)
+     * @see PGNManager#collapseTranspositions(MoveTreeNode, Board)
+     */
+    public static MoveTreeNode loadAndMerge(File[] files, int threads, Board b, Consumer<File> progress) throws IOException, InvalidPGNException, InvalidFENException, InterruptedException, InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        if (files.length == 0)
+        {
+            throw new IllegalArgumentException("No files to merge");
+        }
+        int n = Math.max(1, Math.min(threads, files.length));
+
+        MoveTreeNode[] roots = new MoveTreeNode[files.length];
+        ExecutorService pool = Executors.newFixedThreadPool(n);
+        try
+        {
+            ArrayList<Future<MoveTreeNode>> parsed = new ArrayList<>();
+            for (File f : files)
+            {
+                parsed.add(pool.submit(() -> {
+                    MoveTreeNode root = PGNManager.convertPGNToTree(f);
+                    if (progress != null)
+                    {
+                        progress.accept(f);
+                    }
+                    return root;
+                }));
+            }
+            for (int i = 0; i < files.length; i++)
+            {
+                roots[i] = await(parsed.get(i));
+            }
+
+            // Each round merges every tree at a multiple of twice STEP with the one STEP after it, so after the last
+            // round the first tree holds them all
+            for (int step = 1; step < roots.length; step *= 2)
+            {
+                ArrayList<Future<MoveTreeNode>> merged = new ArrayList<>();
+                for (int i = 0; i + step < roots.length; i += 2 * step)
+                {
+                    ArrayList<MoveTreeNode> pair = new ArrayList<>();
+                    pair.add(roots[i]);
+                    pair.add(roots[i + step]);
+                    merged.add(pool.submit(() -> PGNManager.mergeTrees(pair)));
+                }
+                for (int i = 0; i < merged.size(); i++)
+                {
+                    roots[2 * step * i] = await(merged.get(i));
+                }
+            }
+        }
+        finally
+        {
+            pool.shutdownNow();
+        }
+
+        return b == null ? roots[0] : PGNManager.collapseTranspositions(roots[0], b);
+    }
+
+    /**
+     * Waits for a parse or a merge, rethrowing whatever it threw
+     *
+     * @param f The future of a parse or a merge
+     * @return The root node parsed or merged
+     * @throws IOException if the file could not be read
+     * @throws InvalidPGNException if the file is not valid PGN
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static MoveTreeNode await(Future<MoveTreeNode> f) throws IOException, InvalidPGNException, InvalidFENException, InterruptedException
+    {
+        try
+        {
+            return f.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InvalidPGNException)
+            {
+                throw (InvalidPGNException) cause;
+            }
+            if (cause instanceof InvalidFENException)
+            {
+                throw (InvalidFENException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
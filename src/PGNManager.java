@@ -1,224 +1,314 @@
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Scanner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class PGNManager
 {
     /**
-     * Converts the PGN file to a move tree
+     * Converts the PGN file to a move tree, streaming it through a PGNTokenizer straight into the tree so the file is
+     * never held in memory as a whole. The file is read as UTF-8, as every PGN this program writes is.
      *
      * @param pgn A PGN file to be converted to a move tree
-     * @param b A Board used for FEN construction - MAY NOT BE USED IN FUTURE DELETE IF NECESSARY
      * @return The root of the move tree
+     * @throws IOException if PGN cannot be read
+     * @throws InvalidPGNException if PGN has no result tag, no moves, or malformed movetext
+     * @see PGNTokenizer#next()
      */
-    protected static MoveTreeNode convertPGNToTree(File pgn, Board b) throws FileNotFoundException, InvalidPGNException, InvalidFENException, InvalidSquareException
+    protected static MoveTreeNode convertPGNToTree(File pgn) throws IOException, InvalidPGNException, InvalidFENException
     {
-        String result;
-        String fen;
-        String moveStr;
-
-        // Read and convert the file to a String array containing the result String, the FEN String, and the move String
-        String[] temp = readFile(pgn);
-        result = temp[0];
-        fen = temp[1];
-
-        // Process the big move String into an list of move Strings
-        moveStr = temp[2].replaceAll("\n", " ");
-        moveStr = moveStr.replaceAll("\\{(.|\\n)+?}", "");
-        moveStr = moveStr.replaceAll("\\d+?\\.(\\.\\.)? ", "");
-        moveStr = moveStr.replaceAll("\\$\\d+", "");
-        moveStr = moveStr.replaceAll("\\(", " ( ");
-        moveStr = moveStr.replaceAll("\\)", " ) ");
-        moveStr = moveStr.replaceAll(" {2,}", " ");
-
-        ArrayList<String> moves = new ArrayList<>(Arrays.asList(moveStr.split(" ")));
-
-        // Create a tree from the list of move Strings, and return the root of the tree
-        MoveTreeNode root = new MoveTreeNode(fen, null, b);
-        createTreeFromMoves(moves, root, result);
-        return root;
+        try (PGNTokenizer tokens = new PGNTokenizer(new FileReader(pgn, StandardCharsets.UTF_8)))
+        {
+            return convertPGNToTree(tokens);
+        }
     }
 
     /**
-     * Recursively creates a move tree from MOVES
+     * Reads one game from TOKENS, starting at its tags, into a move tree
      *
-     * @param moves A list of moves to be converted to a move tree
-     * @param parent The parent node for this recursive step
-     * @param result The String after which to return
+     * @param tokens A tokenizer at the start of a game
+     * @return The root of the move tree
+     * @throws IOException @see
+     * @throws InvalidPGNException if the game has no result tag, no moves, or malformed movetext
      */
-    private static void createTreeFromMoves(ArrayList<String> moves, MoveTreeNode parent, String result) throws InvalidFENException, InvalidSquareException
+    protected static MoveTreeNode convertPGNToTree(PGNTokenizer tokens) throws IOException, InvalidPGNException, InvalidFENException
     {
-        String s = moves.remove(0);
-        if (s.equals(result))
+        LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+
+        // Read the tags, which are kept on the root so they can be written back out
+        PGNToken token = tokens.next();
+        while (token == PGNToken.TAG)
         {
-            return;
+            tags.put(tokens.getTagName(), tokens.getTagValue());
+            token = tokens.next();
         }
-        else if (s.equals("("))
+
+        if (!tags.containsKey("Result"))
         {
-            MoveTreeNode grandparent = parent.getParent();
-            createTreeFromMoves(moves, grandparent, ")");
-            createTreeFromMoves(moves, parent, result);
+            throw new InvalidPGNException("PGN must have a result tag");
         }
-        else
+        if (token != PGNToken.MOVE_NUMBER && token != PGNToken.COMMENT)
         {
-            MoveTreeNode n = new MoveTreeNode(s, parent, null);
-            parent.addChild(n);
-            createTreeFromMoves(moves, n, result);
+            throw new InvalidPGNException("Excluding tags, PGN file must start with \"1.\"");
         }
+
+        // Create a tree from the rest of the tokens, and return the root of the tree
+        MoveTreeStore store = new MoveTreeStore(new FEN(tags.getOrDefault("FEN", FEN.DEFAULT_FEN)));
+        createTreeFromTokens(tokens, store);
+
+        MoveTreeNode root = store.getRoot();
+        for (Map.Entry<String, String> tag : tags.entrySet())
+        {
+            root.setTag(tag.getKey(), tag.getValue());
+        }
+        return root;
     }
 
     /**
-     * Reads the PGN file, extracting the result String from the Result tag, the FEN String from the FEN tag if it exists,
-     *     and all moves and variations.
+     * Adds the moves read from TOKENS to STORE, up to the result. Each variation is an alternative to the move before
+     * it, so it starts from that move's parent; the node at which the interrupted line resumes is kept on an explicit
+     * stack instead of the call stack, so any nesting depth or game length builds in linear time.
      *
-     * @param pgn A PGN file to be read
-     * @return {result, fenString, PGN moves}
+     * @param tokens A tokenizer in the movetext of a game
+     * @param store A tree of only a root, after which the main line starts
+     * @throws InvalidPGNException if the parentheses do not match, or a variation has no move to be an alternative to
      */
-    protected static String[] readFile(File pgn) throws FileNotFoundException, InvalidPGNException
+    private static void createTreeFromTokens(PGNTokenizer tokens, MoveTreeStore store) throws IOException, InvalidPGNException
     {
-        Scanner sc = new Scanner(pgn);
-        boolean tags = true;
-        StringBuilder sb = new StringBuilder();
-        String result = null;
-        String fen = FEN.DEFAULT_FEN;
+        int[] resume = new int[16]; // The last node of each line interrupted by an open variation
+        int open = 0; // The number of open variations
+        int parent = 0; // The node after which the next move is played
 
-        while (sc.hasNextLine())
+        while (true)
         {
-            String ln = sc.nextLine();
-
-            if (tags)
+            switch (tokens.next())
             {
-                if (!ln.equals(""))
-                {
-                    if (ln.charAt(0) == '[')
+                case SAN -> parent = store.add(parent, tokens.getText(), PackedMove.NONE);
+                case VARIATION_START -> {
+                    if (parent == 0)
                     {
-                        Pattern resultPattern = Pattern.compile("\\[Result \"(.+?)\"]");
-                        Matcher resultMatcher = resultPattern.matcher(ln);
-                        if (resultMatcher.matches())
-                        {
-                            result = resultMatcher.group(1);
-                        }
-                        else
-                        {
-                            Pattern fenPattern = Pattern.compile("\\[FEN \"(.+?)\"]");
-                            Matcher fenMatcher = fenPattern.matcher(ln);
-                            if (fenMatcher.matches())
-                            {
-                                fen = fenMatcher.group(1);
-                            }
-                        }
+                        throw new InvalidPGNException("Variation before any move on line " + tokens.getLine());
                     }
-                    else if (ln.charAt(0) == '1')
+                    if (open == resume.length)
                     {
-                        if (result == null)
-                        {
-                            throw new InvalidPGNException("PGN must have a result tag");
-                        }
-                        tags = false;
-                        sb.append(ln);
+                        resume = Arrays.copyOf(resume, open * 2);
                     }
-                    else if (ln.charAt(0) == '{')
+                    resume[open++] = parent;
+                    parent = store.getParent(parent);
+                }
+                case VARIATION_END -> {
+                    if (open == 0)
                     {
-                        while (ln.charAt(0) != '}')
-                        {
-                            if (ln.charAt(0) == '\\')
-                            {
-                                if (ln.charAt(1) == '}')
-                                {
-                                    ln = ln.substring(2);
-                                }
-                            }
-                            ln = ln.substring(1);
-                            if (ln.length() == 0)
-                            {
-                                ln = sc.nextLine();
-                            }
-                        }
-                        ln = ln.substring(1).trim();
-                        sb.append(ln);
-                        tags = false;
+                        throw new InvalidPGNException("Unmatched \")\" on line " + tokens.getLine());
                     }
-                    else
+                    parent = resume[--open];
+                }
+                case RESULT, END, TAG -> {
+                    if (open != 0)
                     {
-                        throw new InvalidPGNException("Excluding tags, PGN file must start with \"1.\"");
+                        throw new InvalidPGNException("Unclosed variation on line " + tokens.getLine());
                     }
+                    return;
+                }
+                default -> {
+                    // Move numbers, NAGs, and comments do not affect the tree
                 }
-            }
-            else
-            {
-                sb.append(' ');
-                sb.append(ln);
             }
         }
-
-        return new String[] {result, fen, sb.toString().trim()};
     }
 
     /**
-     * Calls helper recursive method, which has more parameters, for each child of ROOT and concatenates them with necessary changes
+     * Writes the tag roster, then the movetext of every line of the tree below ROOT
      *
      * @param root The root node of the tree from which the PGN String is being returned. Must be a root node.
      * @return A PGN of the move tree, as a string (not a file)
+     * @see #writePGN(MoveTreeNode, Writer)
      */
     protected static String convertTreeToPGN(MoveTreeNode root)
+    {
+        StringWriter sw = new StringWriter();
+        try
+        {
+            writePGN(root, sw);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e); // A StringWriter never throws
+        }
+        return sw.toString();
+    }
+
+    /**
+     * Writes the tags, then the movetext of every line of the tree below ROOT, to OUT as it goes, so the PGN is never
+     * held in memory as a whole. Lines are not wrapped. OUT is neither flushed nor closed.
+     *
+     * @param root The root node of a move tree. Must be a root node.
+     * @param out The Writer to which the PGN is written
+     * @throws IOException if OUT cannot be written
+     * @see #writePGN(MoveTreeNode, Writer, int)
+     */
+    protected static void writePGN(MoveTreeNode root, Writer out) throws IOException
+    {
+        writePGN(root, out, PGNWriter.NO_WRAP);
+    }
+
+    /**
+     * Writes the PGN of the tree of ROOT to OUT in UTF-8, wrapped at WIDTH. OUT is flushed but not closed.
+     *
+     * @param root The root node of a move tree. Must be a root node.
+     * @param out The OutputStream to which the PGN is written
+     * @param width The longest line to write, or PGNWriter.NO_WRAP
+     * @throws IOException if OUT cannot be written
+     * @see #writePGN(MoveTreeNode, Writer, int)
+     */
+    protected static void writePGN(MoveTreeNode root, OutputStream out, int width) throws IOException
+    {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writePGN(root, w, width);
+        w.flush();
+    }
+
+    /**
+     * Writes the tags of ROOT, then the movetext of every line of the tree below it, to OUT as it goes. The Seven Tag
+     * Roster comes first, with "?" for any tag the tree does not have, then the FEN of a non-standard starting position,
+     * then the rest of the tags in the order they were read. The movetext ends with the Result tag, or "*" if there is
+     * none. OUT is neither flushed nor closed.
+     *
+     * @param root The root node of a move tree. Must be a root node.
+     * @param out The Writer to which the PGN is written
+     * @param width The longest line to write, or PGNWriter.NO_WRAP
+     * @throws IOException if OUT cannot be written
+     * @see #writeMovetext(PGNWriter, MoveTreeNode)
+     */
+    protected static void writePGN(MoveTreeNode root, Writer out, int width) throws IOException
     {
         assert root.isRoot();
 
-        StringBuilder sb = new StringBuilder();
+        PGNWriter pgn = new PGNWriter(out, width);
+        Map<String, String> tags = root.getTags();
+        String result = tags.getOrDefault("Result", "*");
 
-        sb.append("[Event \"?\"]\n" +
-                "[Site \"?\"]\n" +
-                "[Date \"????.??.??\"]\n" +
-                "[Round \"?\"]\n" +
-                "[White \"?\"]\n" +
-                "[Black \"?\"]\n" +
-                "[Result \"*\"]\n");
+        for (String name : SEVEN_TAG_ROSTER)
+        {
+            String value = tags.get(name);
+            if (value == null)
+            {
+                value = name.equals("Date") ? "????.??.??" : name.equals("Result") ? "*" : "?";
+            }
+            pgn.tag(name, value);
+        }
 
         FEN f = root.getFen();
         if (!f.isStartingPositionFen())
         {
-            sb.append(String.format("[FEN \"%s\"]\n", f));
+            pgn.tag("FEN", f.toString());
         }
 
-        sb.append('\n');
-        sb.append(convertTreeToPGN(root, 1, Side.BLACK, false, false));
-        sb.append('*'); // TODO: Add different results
+        for (Map.Entry<String, String> tag : tags.entrySet())
+        {
+            if (!tag.getKey().equals("FEN") && !Arrays.asList(SEVEN_TAG_ROSTER).contains(tag.getKey()))
+            {
+                pgn.tag(tag.getKey(), tag.getValue());
+            }
+        }
 
-        return sb.toString();
+        pgn.endTags();
+        writeMovetext(pgn, root);
+        pgn.token(result);
     }
 
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+
+    /*
+    The writer's work items, kept on an explicit stack. Each is packed into an int: the kind of item in bits 0-1, then
+    one bit each for the side that played the node's move being Black, the node heading a variation, and the node being
+    the primary child of a parent that has variations, then the fullmove count from bit 5.
+     */
+    private static final int WRITE_NODE = 0; // Write the node's children and the lines below them
+    private static final int OPEN_VARIATION = 1; // Write "("
+    private static final int CLOSE_VARIATION = 2; // Write ")"
+    private static final int BLACK_MOVED = 1 << 2;
+    private static final int HEAD = 1 << 3;
+    private static final int PRIMARY = 1 << 4;
+    private static final int MOVE_COUNT_SHIFT = 5;
+
     /**
-     * Initially called on a root node and recurses through each node to create a PGN String for the move tree.
+     * Writes the movetext of every line below ROOT to OUT. The main line of each node is its first child, and its other
+     * children are variations, written in parentheses before the main line continues. Works through an explicit stack,
+     * so the depth of the tree does not reach the call stack, and the memory used depends only on its depth.
      *
-     * @param node The acting root node
-     * @param moveCount The fullmove count for legibility purposes
-     * @param side The side playing NODE's move
-     * @param isHead True if NODE's index in NODE's PARENT's CHILDREN list is greater than 0, false otherwise
-     * @param isPrimary True if NODE's PARENT has more than one child and NODE's index in NODE's PARENT's CHILDREN list is 0, false if either one is not true
-     * @return A PGN of the move tree, as a string (not a file)
+     * @param out The PGNWriter to which the movetext is written
+     * @param root The root node of a move tree
+     * @throws IOException if OUT cannot be written
      */
-    private static String convertTreeToPGN(MoveTreeNode node, int moveCount, Side side, boolean isHead, boolean isPrimary)
+    private static void writeMovetext(PGNWriter out, MoveTreeNode root) throws IOException
     {
-        assert !(isHead && isPrimary);
+        MoveTreeStore store = root.getStore();
+        int[] nodes = new int[16]; // The node of each item on the stack, MoveTreeStore.NONE if it has none
+        int[] items = new int[16]; // The packed items on the stack
+        int[] children = new int[16]; // The children of the node being written
+        int top = 0; // The number of items on the stack
 
-        StringBuilder sb = new StringBuilder();
+        nodes[top] = root.getIndex();
+        items[top++] = WRITE_NODE | BLACK_MOVED | 1 << MOVE_COUNT_SHIFT;
 
-        if (isHead)
+        while (top > 0)
         {
-            sb.append(moveCount).append(side == Side.WHITE ? ". " : "... ").append(node.getMove()).append(' ');
-        }
+            int item = items[--top];
+            int node = nodes[top];
 
-        ArrayList<MoveTreeNode> children = node.getChildren();
-        if (children.size() != 0)
-        {
-            MoveTreeNode primary = children.get(0);
+            int kind = item & 3;
+            if (kind == OPEN_VARIATION)
+            {
+                out.openVariation();
+                continue;
+            }
+            if (kind == CLOSE_VARIATION)
+            {
+                out.closeVariation();
+                continue;
+            }
+
+            Side side = (item & BLACK_MOVED) != 0 ? Side.BLACK : Side.WHITE;
+            boolean isHead = (item & HEAD) != 0;
+            boolean isPrimary = (item & PRIMARY) != 0;
+            int moveCount = item >>> MOVE_COUNT_SHIFT;
+
+            if (isHead)
+            {
+                out.token(moveCount + (side == Side.WHITE ? "." : "..."));
+                out.token(store.getMove(node));
+            }
+
+            int count = 0;
+            for (int c = store.getFirstChild(node); c != MoveTreeStore.NONE; c = store.getNextSibling(c))
+            {
+                if (count == children.length)
+                {
+                    children = Arrays.copyOf(children, count * 2);
+                }
+                children[count++] = c;
+            }
+            if (count == 0)
+            {
+                continue;
+            }
+
+            int primary = children[0];
             if (isPrimary)
             {
-                sb.append(moveCount).append(side == Side.WHITE ? "... " : ". ");
+                out.token(moveCount + (side == Side.WHITE ? "..." : "."));
             }
             else if (side == Side.BLACK)
             {
@@ -226,27 +316,32 @@ public class PGNManager
                 {
                     moveCount++;
                 }
-                sb.append(moveCount).append(". ");
+                out.token(moveCount + ".");
             }
-            sb.append(primary.getMove()).append(' ');
-            boolean primFlag = false;
-            for (int i = 1; i < children.size(); i++)
+            out.token(store.getMove(primary));
+
+            // Pushed in reverse, so the variations come off the stack in order and the main line after all of them
+            int childSide = side == Side.WHITE ? BLACK_MOVED : 0;
+            int next = side == Side.WHITE ? moveCount + 1 : moveCount;
+            int needed = top + 1 + 3 * (count - 1);
+            if (needed > items.length)
             {
-                primFlag = true;
-                String s = convertTreeToPGN(children.get(i), moveCount, Utils.flip(side), true, false);
-                sb.append('(').append(s);
-                sb.setLength(sb.length() - 1);
-                sb.append(')').append(' ');
+                int length = Math.max(needed, items.length * 2);
+                items = Arrays.copyOf(items, length);
+                nodes = Arrays.copyOf(nodes, length);
             }
-            if (side == Side.WHITE)
+            nodes[top] = primary;
+            items[top++] = WRITE_NODE | childSide | (count > 1 ? PRIMARY : 0) | next << MOVE_COUNT_SHIFT;
+            for (int i = count - 1; i >= 1; i--)
             {
-                moveCount++;
+                nodes[top] = MoveTreeStore.NONE;
+                items[top++] = CLOSE_VARIATION;
+                nodes[top] = children[i];
+                items[top++] = WRITE_NODE | childSide | HEAD | moveCount << MOVE_COUNT_SHIFT;
+                nodes[top] = MoveTreeStore.NONE;
+                items[top++] = OPEN_VARIATION;
             }
-            String s = convertTreeToPGN(primary, moveCount, Utils.flip(side), false, primFlag);
-            sb.append(s);
         }
-
-        return sb.toString();
     }
 
     /**
@@ -272,40 +367,353 @@ public class PGNManager
     }
 
     /**
-     * Destructively and recursively merges N2 into N1
+     * Destructively merges the tree of N2 into the tree of N1 in one pass over N2's tree. Each child of a node of N2 is
+     * looked up among the children of the matching node of N1 by its move: if there is a match, their children are
+     * merged in turn, and otherwise the child is copied over with its whole subtree, after N1's existing children. N1
+     * keeps only the tags that N2 has with the same value. Works on the stores of the trees, so no node objects are
+     * made.
      *
-     * @param n1 A MoveTreeNode
-     * @param n2 A MoveTreeNode
+     * @param n1 The root node of a move tree
+     * @param n2 The root node of a move tree starting from the same position
      * @return N1, with N2 merged in
+     * @throws UnsupportedOperationException if the trees start from different positions
      */
     private static MoveTreeNode mergeTwoTrees(MoveTreeNode n1, MoveTreeNode n2)
     {
-        if (n1.equals(n2))
+        if (!n1.equals(n2))
+        {
+            throw new UnsupportedOperationException("Make sure your roots are compatible");
+        }
+
+        // Only the tags both games agree on still describe the merged tree
+        n1.getTags().entrySet().removeIf(tag -> !tag.getValue().equals(n2.getTag(tag.getKey())));
+
+        MoveTreeStore s1 = n1.getStore();
+        MoveTreeStore s2 = n2.getStore();
+        int[] pairs = new int[32]; // Matching nodes of N1 and N2 still to merge, in pairs
+        int top = 0;
+        pairs[top++] = n1.getIndex();
+        pairs[top++] = n2.getIndex();
+
+        while (top > 0)
+        {
+            int from = pairs[--top];
+            int into = pairs[--top];
+
+            for (int child = s2.getFirstChild(from); child != MoveTreeStore.NONE; child = s2.getNextSibling(child))
+            {
+                int match = s1.findChild(into, s2, child);
+                if (match == MoveTreeStore.NONE)
+                {
+                    s1.copy(into, s2, child);
+                }
+                else
+                {
+                    if (top + 2 > pairs.length)
+                    {
+                        pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                    }
+                    pairs[top++] = match;
+                    pairs[top++] = child;
+                }
+            }
+        }
+
+        return n1;
+    }
+
+    /**
+     * Turns the tree of ROOT into a graph of positions. Nodes are visited in order of depth, and a node whose position
+     * was already reached at another node becomes a transposition into it: its children are merged into that node's,
+     * and it is left without children of its own. Every position then has its continuations at exactly one node, which
+     * every move reaching it leads to through getPositionNode().
+     *
+     * The children lists still form a tree, in which each transposition is a leaf, so the tree writes to a PGN with
+     * the continuations from each position written only once.
+     *
+     * @param root The root node of a move tree
+     * @param b A Board used to replay the moves of the tree. Left at the starting position.
+     * @return ROOT
+     * @throws InvalidMoveException if a move of the tree is illegal
+     * @see MoveTreeNode#getPositionNode()
+     */
+    protected static MoveTreeNode collapseTranspositions(MoveTreeNode root, Board b) throws InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        assert root.isRoot();
+
+        replay(root, b);
+
+        MoveTreeStore store = root.getStore();
+        HashMap<Long, Integer> positions = new HashMap<>(); // The node at which each position was first reached, keyed by hash
+        int[] queue = new int[store.size()]; // The nodes to visit, in order of depth
+        int head = 0; // The index in QUEUE of the next node to visit
+        int tail = 0; // The number of nodes queued
+        int[] pairs = new int[32]; // Matching nodes still to merge, in pairs
+        queue[tail++] = root.getIndex();
+
+        while (head < tail)
         {
-            ArrayList<MoveTreeNode[]> arr = MoveTreeNode.pairChildren(n1, n2);
-            for (MoveTreeNode n : arr.remove(arr.size() - 1))
+            int n = queue[head++];
+            Integer first = positions.putIfAbsent(store.getHash(n), n);
+            if (first == null)
             {
-                n1.addChild(n);
+                for (int c = store.getFirstChild(n); c != MoveTreeStore.NONE; c = store.getNextSibling(c))
+                {
+                    if (tail == queue.length)
+                    {
+                        queue = Arrays.copyOf(queue, tail * 2);
+                    }
+                    queue[tail++] = c;
+                }
+                continue;
             }
-            arr.remove(arr.size() - 1);
-            for (MoveTreeNode[] a : arr)
+
+            // Merge the continuations into FIRST, moving over the lines it does not have yet. The children of N are cut
+            // off first, so they, and the children of each of them that has a match, can be moved.
+            store.setPositionNode(n, first);
+            int top = 0;
+            pairs[top++] = first;
+            pairs[top++] = n;
+            boolean transposing = true; // True for the pair of FIRST and N, whose children are detached from N
+
+            while (top > 0)
             {
-                mergeTwoTrees(a[0], a[1]);
+                int from = pairs[--top];
+                int into = store.getPositionNode(pairs[--top]);
+
+                // Lines moved under a node still to be visited are visited with it
+                Integer reached = positions.get(store.getHash(into));
+                boolean visited = reached != null && reached == into;
+                int child = transposing ? store.detachChildren(from) : store.getFirstChild(from);
+                while (child != MoveTreeStore.NONE)
+                {
+                    int next = store.getNextSibling(child);
+                    int match = store.findChild(into, store, child);
+                    if (match == MoveTreeStore.NONE)
+                    {
+                        store.move(into, child);
+                        if (visited)
+                        {
+                            if (tail == queue.length)
+                            {
+                                queue = Arrays.copyOf(queue, tail * 2);
+                            }
+                            queue[tail++] = child;
+                        }
+                    }
+                    else
+                    {
+                        if (top + 2 > pairs.length)
+                        {
+                            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+                        }
+                        pairs[top++] = match;
+                        pairs[top++] = child;
+                    }
+                    child = next;
+                }
+                transposing = false;
             }
         }
-        else if (n1.isRoot() && n2.isRoot())
+
+        return root;
+    }
+
+    /**
+     * Sets the hash and the packed move of every node in the tree of ROOT by replaying its moves on B, depth first
+     *
+     * @param root The root node of a move tree
+     * @param b A Board. Left at the starting position of the tree.
+     * @throws InvalidMoveException if a move of the tree is illegal
+     */
+    protected static void replay(MoveTreeNode root, Board b) throws InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        replay(root, b, null);
+    }
+
+    /**
+     * Replays the whole tree of ROOT once, so that every node has its packed move and hash before it is ever practiced,
+     * and no SAN needs to be read during play. Every illegal or malformed move is found, not just the first, and the
+     * moves below one are not replayed.
+     *
+     * @param root The root node of a move tree
+     * @param b A Board. Left at the starting position of the tree.
+     * @throws InvalidPGNException if any move of the tree is invalid, listing the line to each such move
+     * @see #replay(MoveTreeNode, Board)
+     */
+    protected static void validate(MoveTreeNode root, Board b) throws InvalidPGNException, InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        ArrayList<String> invalid = new ArrayList<>();
+        replay(root, b, invalid);
+        if (!invalid.isEmpty())
         {
-            throw new UnsupportedOperationException("Make sure your roots are compatible");
+            StringBuilder sb = new StringBuilder();
+            sb.append(invalid.size()).append(invalid.size() == 1 ? " invalid move:" : " invalid moves:");
+            for (String line : invalid)
+            {
+                sb.append('\n').append(line);
+            }
+            throw new InvalidPGNException(sb.toString());
         }
-        else if (n1.isRoot() ^ n2.isRoot())
+    }
+
+    /**
+     * @param n A node other than the root, whose parent's position is on B
+     * @param b A Board
+     * @return The move of N on B, from its packed move if it has one, or else from its SAN
+     * @throws InvalidMoveException if the move is illegal on B
+     */
+    protected static Move toMove(MoveTreeNode n, Board b) throws InvalidMoveException, InvalidSquareException, InvalidPieceException
+    {
+        return toMove(n.getMove(), n.getCode(), b);
+    }
+
+    /**
+     * @param san The SAN of a move from the position on B
+     * @param code The packed move of SAN, or PackedMove.NONE if not known
+     * @param b A Board
+     * @return The move on B, from CODE if it is known, or else from SAN
+     * @throws InvalidMoveException if the move is illegal on B
+     */
+    private static Move toMove(String san, int code, Board b) throws InvalidMoveException, InvalidSquareException, InvalidPieceException
+    {
+        if (code == PackedMove.NONE)
         {
-            throw new UnsupportedOperationException("Make sure nodes are either both roots or both children");
+            return new Move(san, b);
         }
-        else
+
+        // The packed move may carry flags from when it was played, so the legal move as generated is used instead
+        int move = b.getLegalMove(PackedMove.from(code), PackedMove.to(code), PackedMove.promotion(code));
+        if (move == PackedMove.NONE)
         {
-            n1.getParent().addChild(n2);
+            throw new InvalidMoveException("Illegal move");
         }
+        return new Move(move, b);
+    }
 
-        return n1;
+    /**
+     * Replays the tree of ROOT on B depth first, setting the hash and packed move of each node. A repetition does not
+     * end a line, so only moves after checkmate or stalemate are invalid.
+     *
+     * @param root The root node of a move tree
+     * @param b A Board. Left at the starting position of the tree.
+     * @param invalid The list to which the line to each invalid move is added, or null to throw at the first
+     * @throws InvalidMoveException if a move is illegal and INVALID is null
+     */
+    private static void replay(MoveTreeNode root, Board b, ArrayList<String> invalid) throws InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        b.setRepetitionDraws(false);
+        try
+        {
+            replayFrom(root, b, invalid);
+        }
+        finally
+        {
+            b.setRepetitionDraws(true);
+        }
+    }
+
+    /**
+     * Replays the tree of ROOT on B, which must not end the game on a repetition
+     *
+     * @see #replay(MoveTreeNode, Board, ArrayList)
+     */
+    private static void replayFrom(MoveTreeNode root, Board b, ArrayList<String> invalid) throws InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        MoveTreeStore store = root.getStore();
+        b.startFromFen(root.getFen());
+        store.setHash(root.getIndex(), b.getHash());
+
+        int[] line = new int[64]; // The nodes from the root to the current position
+        int[] next = new int[64]; // The next child of each node of LINE to replay, or MoveTreeStore.NONE
+        int depth = 0; // The index in LINE of the current position
+        line[0] = root.getIndex();
+        next[0] = store.getFirstChild(root.getIndex());
+
+        while (depth >= 0)
+        {
+            int child = next[depth];
+            if (child != MoveTreeStore.NONE)
+            {
+                next[depth] = store.getNextSibling(child);
+                Move m;
+                try
+                {
+                    // The board ignores moves once the game is over, which would leave the replay out of step. With
+                    // repetition draws off, only checkmate and stalemate end it.
+                    if (b.getState() != GameState.IN_PROGRESS)
+                    {
+                        throw new InvalidMoveException("The game is already over");
+                    }
+                    m = toMove(store.getMove(child), store.getCode(child), b);
+                    b.move(m);
+                }
+                catch (InvalidMoveException | InvalidPieceException e)
+                {
+                    if (invalid == null)
+                    {
+                        throw e;
+                    }
+                    invalid.add(lineTo(store, line, depth, child) + " (" + e.getMessage() + ")");
+                    continue;
+                }
+                store.setHash(child, b.getHash());
+                store.setCode(child, m.getCode());
+
+                if (++depth == line.length)
+                {
+                    line = Arrays.copyOf(line, depth * 2);
+                    next = Arrays.copyOf(next, depth * 2);
+                }
+                line[depth] = child;
+                next[depth] = store.getFirstChild(child);
+            }
+            else
+            {
+                if (depth > 0)
+                {
+                    b.undoMove();
+                }
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @param store A move tree
+     * @param line The nodes from the root to the parent of N, from index 0 to DEPTH
+     * @param depth The index in LINE of the parent of N
+     * @param n A node
+     * @return The moves from the root to N, with move numbers, as in movetext
+     */
+    private static String lineTo(MoveTreeStore store, int[] line, int depth, int n)
+    {
+        FEN f = store.getFen();
+        boolean white = f.getToMove() == Side.WHITE;
+        int moveCount = f.getFullmoves();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= depth + 1; i++)
+        {
+            if (white)
+            {
+                sb.append(moveCount).append(". ");
+            }
+            else if (i == 1)
+            {
+                sb.append(moveCount).append("... ");
+            }
+            sb.append(store.getMove(i == depth + 1 ? n : line[i]));
+            if (i <= depth)
+            {
+                sb.append(' ');
+            }
+            if (!white)
+            {
+                moveCount++;
+            }
+            white = !white;
+        }
+        return sb.toString();
     }
-}
\ No newline at end of file
+}
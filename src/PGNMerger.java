@@ -4,7 +4,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.util.ArrayList;
+import java.util.List;
 
 public class PGNMerger extends JFrame
 {
@@ -28,8 +28,11 @@ public class PGNMerger extends JFrame
         JButton choose = new JButton("Select File");
         JButton merge = new JButton("Merge");
 
+        JCheckBox transpositions = new JCheckBox("Merge transpositions");
+
         buttons.add(choose);
         buttons.add(merge);
+        buttons.add(transpositions);
 
         JPanel label = new JPanel();
         JLabel filesLabel = new JLabel("no files selected", SwingConstants.CENTER);
@@ -104,32 +107,56 @@ public class PGNMerger extends JFrame
                     JOptionPane.showMessageDialog(null, "Make sure you pick at least one file!", "No files selected", JOptionPane.ERROR_MESSAGE);
                     return;
                 }
-                try
+                File[] selected = files[0];
+                boolean collapse = transpositions.isSelected();
+                merge.setEnabled(false);
+                text.setText("Parsing " + selected.length + " files...");
+
+                // Parse and merge off the event dispatch thread, so the window stays responsive
+                new SwingWorker<String, File>()
                 {
-                    Board b = new Board();
-                    ArrayList<MoveTreeNode> roots = new ArrayList<>();
-                    for (File file : files[0])
+                    private int parsed = 0; // The number of files parsed so far
+
+                    @Override
+                    protected String doInBackground() throws Exception
                     {
-                        roots.add(PGNManager.convertPGNToTree(file, b));
+                        // Only collapsing needs a Board, to replay the moves
+                        MoveTreeNode trueRoot = PGNLoader.loadAndMerge(selected, Runtime.getRuntime().availableProcessors(), collapse ? new Board() : null, this::publish);
+
+                        StringBuilder sb = new StringBuilder();
+                        sb.append("Files merged:\n");
+                        for (File file : selected)
+                        {
+                            sb.append(file.getName());
+                            sb.append('\n');
+                        }
+                        sb.append("\n\n");
+                        sb.append(PGNManager.convertTreeToPGN(trueRoot));
+                        return sb.toString();
                     }
-                    MoveTreeNode trueRoot = PGNManager.mergeTrees(roots);
 
-                    StringBuilder sb = new StringBuilder();
-                    sb.append("Files merged:\n");
-                    for (File file : files[0])
+                    @Override
+                    protected void process(List<File> chunks)
                     {
-                        sb.append(file.getName());
-                        sb.append('\n');
+                        parsed += chunks.size();
+                        text.setText(String.format("Parsed %d of %d files (last: %s)", parsed, selected.length, chunks.get(chunks.size() - 1).getName()));
                     }
-                    sb.append("\n\n");
-                    sb.append(PGNManager.convertTreeToPGN(trueRoot));
-                    text.setText(sb.toString());
-                }
-                catch (Exception ex)
-                {
-                    System.out.println("Something went wrong during board creation");
-                    ex.printStackTrace();
-                }
+
+                    @Override
+                    protected void done()
+                    {
+                        merge.setEnabled(true);
+                        try
+                        {
+                            text.setText(get());
+                        }
+                        catch (Exception ex)
+                        {
+                            text.setText("Something went wrong during the merge:\n" + ex.getCause());
+                            ex.printStackTrace();
+                        }
+                    }
+                }.execute();
             }
         });
     }
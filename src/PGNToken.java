@@ -0,0 +1,4 @@
+public enum PGNToken
+{
+    TAG, MOVE_NUMBER, SAN, NAG, COMMENT, VARIATION_START, VARIATION_END, RESULT, END
+}
@@ -0,0 +1,375 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+public class PGNTokenizer implements Closeable
+{
+    private static final int BUFFER_SIZE = 8192; // The number of characters read from the underlying Reader at once
+
+    private final Reader in; // The source of the PGN
+    private final char[] buffer; // The characters read from IN but not yet consumed
+    private int pos; // The index in BUFFER of the next character
+    private int limit; // The number of characters in BUFFER
+    private int line; // The line of the next character, from 1, for error messages
+    private boolean lineStart; // True if the next character starts a line, false otherwise
+
+    private final StringBuilder text; // The text of the current token
+    private final StringBuilder tagValue; // The value of the current token if it is a tag
+    private PGNToken token; // The current token, or null before the first call to next()
+
+    /**
+     * Lexes the PGN read from IN one character at a time. At most BUFFER_SIZE characters of the input and the text of a
+     * single token are held at once, regardless of the size of the input.
+     *
+     * @param in The source of the PGN. Closed with the tokenizer.
+     */
+    public PGNTokenizer(Reader in)
+    {
+        this.in = in;
+        buffer = new char[BUFFER_SIZE];
+        pos = 0;
+        limit = 0;
+        line = 1;
+        lineStart = true;
+        text = new StringBuilder();
+        tagValue = new StringBuilder();
+    }
+
+    /**
+     * Advances to the next token. The text of the token is then available from getText(), or getTagName() and
+     * getTagValue() for tags.
+     *
+     * Move numbers drop their periods, NAGs keep their "$" (and "!" and "?" annotations become NAGs of their own, so SAN
+     * never carries them), comments drop their braces or semicolon, and escaped "%" lines are skipped entirely.
+     *
+     * @return The type of the new token, END once the input is exhausted
+     * @throws IOException if the input cannot be read
+     * @throws InvalidPGNException if the input is not lexically valid PGN
+     */
+    public PGNToken next() throws IOException, InvalidPGNException
+    {
+        text.setLength(0);
+        tagValue.setLength(0);
+
+        int c;
+        while (true)
+        {
+            boolean atLineStart = lineStart;
+            c = read();
+            if (c == -1)
+            {
+                return token = PGNToken.END;
+            }
+            if (c == '%' && atLineStart)
+            {
+                skipLine();
+            }
+            else if (!Character.isWhitespace(c) && c != '.')
+            {
+                break;
+            }
+        }
+
+        switch (c)
+        {
+            case '[' -> {
+                readTag();
+                return token = PGNToken.TAG;
+            }
+            case '{' -> {
+                readBraceComment();
+                return token = PGNToken.COMMENT;
+            }
+            case ';' -> {
+                readLineComment();
+                return token = PGNToken.COMMENT;
+            }
+            case '(' -> {
+                return token = PGNToken.VARIATION_START;
+            }
+            case ')' -> {
+                return token = PGNToken.VARIATION_END;
+            }
+            case '*' -> {
+                text.append('*');
+                return token = PGNToken.RESULT;
+            }
+            case '$' -> {
+                text.append('$');
+                while (Character.isDigit(peek()))
+                {
+                    text.append((char) read());
+                }
+                if (text.length() == 1)
+                {
+                    throw error("NAG without a number");
+                }
+                return token = PGNToken.NAG;
+            }
+            case '!', '?' -> {
+                text.append((char) c);
+                while (peek() == '!' || peek() == '?')
+                {
+                    text.append((char) read());
+                }
+                return token = PGNToken.NAG;
+            }
+        }
+
+        if (!isSymbolChar(c))
+        {
+            throw error("Unexpected character '" + (char) c + "'");
+        }
+
+        text.append((char) c);
+        while (isSymbolChar(peek()))
+        {
+            text.append((char) read());
+        }
+
+        if (isResult(text))
+        {
+            return token = PGNToken.RESULT;
+        }
+        for (int i = 0; i < text.length(); i++)
+        {
+            if (!Character.isDigit(text.charAt(i)))
+            {
+                return token = PGNToken.SAN;
+            }
+        }
+        return token = PGNToken.MOVE_NUMBER;
+    }
+
+    /**
+     * @return The current token, or null before the first call to next()
+     */
+    public PGNToken getToken()
+    {
+        return token;
+    }
+
+    /**
+     * @return The text of the current token: the SAN, move number, NAG, comment, or result, or the name of a tag
+     */
+    public String getText()
+    {
+        return text.toString();
+    }
+
+    /**
+     * @return The name of the current tag
+     */
+    public String getTagName()
+    {
+        return text.toString();
+    }
+
+    /**
+     * @return The value of the current tag, unescaped
+     */
+    public String getTagValue()
+    {
+        return tagValue.toString();
+    }
+
+    /**
+     * @return The line of the input on which the tokenizer is, from 1
+     */
+    public int getLine()
+    {
+        return line;
+    }
+
+    /**
+     * Closes the underlying Reader
+     *
+     * @throws IOException @see
+     * @see Reader#close()
+     */
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+
+    /**
+     * Reads a tag, whose opening bracket has been consumed, into TEXT and TAGVALUE
+     */
+    private void readTag() throws IOException, InvalidPGNException
+    {
+        skipSpaces();
+        while (isSymbolChar(peek()))
+        {
+            text.append((char) read());
+        }
+        if (text.length() == 0)
+        {
+            throw error("Tag without a name");
+        }
+
+        skipSpaces();
+        if (read() != '"')
+        {
+            throw error("Tag " + text + " has no value");
+        }
+        int c;
+        while ((c = read()) != '"')
+        {
+            if (c == -1 || c == '\n')
+            {
+                throw error("Unterminated value of tag " + text);
+            }
+            if (c == '\\')
+            {
+                c = read();
+                if (c == -1)
+                {
+                    throw error("Unterminated value of tag " + text);
+                }
+            }
+            tagValue.append((char) c);
+        }
+
+        skipSpaces();
+        if (read() != ']')
+        {
+            throw error("Unterminated tag " + text);
+        }
+    }
+
+    /**
+     * Reads a comment, whose opening brace has been consumed, into TEXT. A backslash escapes a closing brace.
+     */
+    private void readBraceComment() throws IOException, InvalidPGNException
+    {
+        int c;
+        while ((c = read()) != '}')
+        {
+            if (c == -1)
+            {
+                throw error("Unterminated comment");
+            }
+            if (c == '\\' && peek() == '}')
+            {
+                c = read();
+            }
+            text.append((char) c);
+        }
+    }
+
+    /**
+     * Reads a comment, whose semicolon has been consumed, into TEXT up to the end of the line
+     */
+    private void readLineComment() throws IOException
+    {
+        int c;
+        while ((c = read()) != -1 && c != '\n')
+        {
+            if (c != '\r')
+            {
+                text.append((char) c);
+            }
+        }
+    }
+
+    /**
+     * Consumes the rest of the current line
+     */
+    private void skipLine() throws IOException
+    {
+        int c;
+        do
+        {
+            c = read();
+        }
+        while (c != -1 && c != '\n');
+    }
+
+    /**
+     * Consumes whitespace up to the next other character
+     */
+    private void skipSpaces() throws IOException
+    {
+        while (peek() != -1 && Character.isWhitespace(peek()))
+        {
+            read();
+        }
+    }
+
+    /**
+     * @return The next character, consumed, or -1 at the end of the input
+     */
+    private int read() throws IOException
+    {
+        if (pos == limit && !fill())
+        {
+            return -1;
+        }
+        char c = buffer[pos++];
+        lineStart = c == '\n';
+        if (lineStart)
+        {
+            line++;
+        }
+        return c;
+    }
+
+    /**
+     * @return The next character, not consumed, or -1 at the end of the input
+     */
+    private int peek() throws IOException
+    {
+        if (pos == limit && !fill())
+        {
+            return -1;
+        }
+        return buffer[pos];
+    }
+
+    /**
+     * Refills BUFFER from IN
+     *
+     * @return True if any characters were read, false at the end of the input
+     */
+    private boolean fill() throws IOException
+    {
+        int n;
+        do
+        {
+            n = in.read(buffer, 0, BUFFER_SIZE);
+        }
+        while (n == 0);
+        pos = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    /**
+     * @param message What is wrong with the input
+     * @return An exception locating MESSAGE in the input
+     */
+    private InvalidPGNException error(String message)
+    {
+        return new InvalidPGNException(message + " on line " + line);
+    }
+
+    /**
+     * @param c A character, or -1
+     * @return True if C can continue a PGN symbol (SAN, move number, result, or tag name), false otherwise
+     */
+    private static boolean isSymbolChar(int c)
+    {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '+' || c == '#' || c == '=' || c == ':' || c == '-' || c == '/';
+    }
+
+    /**
+     * @param s A symbol
+     * @return True if S is a game termination marker, false otherwise
+     */
+    private static boolean isResult(CharSequence s)
+    {
+        return "1-0".contentEquals(s) || "0-1".contentEquals(s) || "1/2-1/2".contentEquals(s);
+    }
+}
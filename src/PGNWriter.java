@@ -0,0 +1,150 @@
+import java.io.IOException;
+import java.io.Writer;
+
+public class PGNWriter
+{
+    public static final int LINE_WIDTH = 80; // The longest line of export format PGN
+    public static final int NO_WRAP = 0; // A width at which lines are never wrapped
+
+    private final Writer out; // The destination of the PGN
+    private final int width; // The longest line written, or NO_WRAP
+    private int column; // The number of characters written on the current line
+    private boolean space; // True if the last token written is owed a separator before the next, false otherwise
+    private boolean open; // True if a "(" is owed before the next token, which it is kept on the same line as
+
+    /**
+     * Writes PGN tokens to OUT one at a time, holding none of them back, so the memory used does not depend on the size
+     * of the PGN. Tokens are separated by single spaces, or by a line break where the next token would run past WIDTH.
+     *
+     * @param out The destination of the PGN. Neither flushed nor closed.
+     * @param width The longest line to write, or NO_WRAP. A single token longer than WIDTH gets a line of its own.
+     */
+    public PGNWriter(Writer out, int width)
+    {
+        this.out = out;
+        this.width = width;
+        column = 0;
+        space = false;
+        open = false;
+    }
+
+    /**
+     * Writes a tag pair on a line of its own, escaping quotes and backslashes in its value. Tag lines are never wrapped.
+     *
+     * @param name The name of the tag
+     * @param value The value of the tag
+     * @throws IOException if the PGN cannot be written
+     */
+    public void tag(String name, String value) throws IOException
+    {
+        endLine();
+        out.write('[');
+        out.write(name);
+        out.write(" \"");
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+            {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write("\"]\n");
+    }
+
+    /**
+     * Ends the tag section with an empty line, so that movetext follows
+     *
+     * @throws IOException if the PGN cannot be written
+     */
+    public void endTags() throws IOException
+    {
+        endLine();
+        out.write('\n');
+    }
+
+    /**
+     * Writes a token of movetext, after a separator if the last token is owed one
+     *
+     * @param token A move number indication, SAN, or game termination marker
+     * @throws IOException if the PGN cannot be written
+     */
+    public void token(String token) throws IOException
+    {
+        int length = open ? token.length() + 1 : token.length();
+        separate(length);
+        if (open)
+        {
+            out.write('(');
+            open = false;
+        }
+        out.write(token);
+        column += length;
+        space = true;
+    }
+
+    /**
+     * Opens a variation. The "(" is written with the first token of the variation, with no separator between them, so
+     * the two are never split across lines.
+     */
+    public void openVariation()
+    {
+        open = true;
+    }
+
+    /**
+     * Writes the ")" that closes a variation, straight after its last token
+     *
+     * @throws IOException if the PGN cannot be written
+     */
+    public void closeVariation() throws IOException
+    {
+        if (width != NO_WRAP && column > 0 && column + 1 > width)
+        {
+            out.write('\n');
+            column = 0;
+        }
+        out.write(')');
+        column++;
+        space = true;
+    }
+
+    /**
+     * Writes the separator owed by the last token, a line break if a token of LENGTH would not fit after a space
+     *
+     * @param length The length of the token about to be written
+     */
+    private void separate(int length) throws IOException
+    {
+        if (!space)
+        {
+            return;
+        }
+
+        if (width != NO_WRAP && column + 1 + length > width)
+        {
+            out.write('\n');
+            column = 0;
+        }
+        else
+        {
+            out.write(' ');
+            column++;
+        }
+        space = false;
+    }
+
+    /**
+     * Ends the current line if anything has been written on it
+     */
+    private void endLine() throws IOException
+    {
+        if (column > 0)
+        {
+            out.write('\n');
+            column = 0;
+        }
+        space = false;
+    }
+}
@@ -0,0 +1,305 @@
+public final class PackedMove
+{
+    /*
+    A move packed into an int:
+    bits 0-5 from square, 6-11 to square, 12-14 promotion piece type (0 if none, since pawns never promote to pawns),
+    19-21 type of the piece moving, and one bit for each flag below. Square indices are as in Bitboard
+    (a1 -> 0, ..., h8 -> 63). Everything needed to write the move in SAN is in the int, so it can be notated after the
+    position it was played from is gone.
+     */
+
+    public static final int NONE = 0; // No move. Never a legal move, as it would move a piece from a1 to a1.
+
+    public static final int CAPTURE = 1 << 15; // The move captures a piece, including en passant
+    public static final int EN_PASSANT = 1 << 16; // The move is an en passant capture
+    public static final int CASTLE = 1 << 17; // The move is a king moving two squares to castle
+    public static final int DOUBLE_PUSH = 1 << 18; // The move is a pawn advancing two squares
+    public static final int BLACK = 1 << 22; // The piece moving is Black's
+    public static final int FILE_NEEDED = 1 << 23; // The SAN must give the file the piece leaves, since another piece of its type could move to the same square
+    public static final int RANK_NEEDED = 1 << 24; // The SAN must give the rank the piece leaves, since another piece of its type could move to the same square
+    public static final int CHECK = 1 << 25; // The move gives check. Only known once the move has been played.
+    public static final int CHECKMATE = 1 << 26; // The move gives checkmate. Only known once the move has been played.
+
+    private static final int SAN_FLAGS = FILE_NEEDED | RANK_NEEDED | CHECK | CHECKMATE; // The flags that only affect notation
+
+    private PackedMove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @param piece The piece moving
+     * @param from The square index the piece leaves
+     * @param to The square index the piece lands on
+     * @param promotion The piece type to which a pawn promotes, or 0
+     * @param flags Any of the flags of this class, OR-ed together
+     * @return The packed move
+     */
+    public static int of(int piece, int from, int to, int promotion, int flags)
+    {
+        return from | to << 6 | promotion << 12 | Position.typeOf(piece) << 19 | (Position.colorOf(piece) == Position.BLACK ? BLACK : 0) | flags;
+    }
+
+    /**
+     * @param move A packed move
+     * @return The square index the piece leaves
+     */
+    public static int from(int move)
+    {
+        return move & 0x3F;
+    }
+
+    /**
+     * @param move A packed move
+     * @return The square index the piece lands on
+     */
+    public static int to(int move)
+    {
+        return move >>> 6 & 0x3F;
+    }
+
+    /**
+     * @param move A packed move
+     * @return The piece type to which a pawn promotes, or Position.EMPTY if the move is not a promotion
+     */
+    public static int promotion(int move)
+    {
+        int type = move >>> 12 & 0x7;
+        return type == 0 ? Position.EMPTY : type;
+    }
+
+    /**
+     * @param move A packed move
+     * @return The piece moving
+     */
+    public static int piece(int move)
+    {
+        return Position.pieceOf(color(move), type(move));
+    }
+
+    /**
+     * @param move A packed move
+     * @return The type of the piece moving
+     */
+    public static int type(int move)
+    {
+        return move >>> 19 & 0x7;
+    }
+
+    /**
+     * @param move A packed move
+     * @return The color of the piece moving
+     */
+    public static int color(int move)
+    {
+        return (move & BLACK) != 0 ? Position.BLACK : Position.WHITE;
+    }
+
+    /**
+     * @param move A packed move
+     * @param flag One of the flags of this class
+     * @return True if MOVE has FLAG set, false otherwise
+     */
+    public static boolean is(int move, int flag)
+    {
+        return (move & flag) != 0;
+    }
+
+    /**
+     * @param a A packed move
+     * @param b A packed move
+     * @return True if A and B are the same move, regardless of how they are notated
+     */
+    public static boolean same(int a, int b)
+    {
+        return (a & ~SAN_FLAGS) == (b & ~SAN_FLAGS);
+    }
+
+    /**
+     * @param move A packed move
+     * @return The Standard Algebraic Notation of MOVE, including any check or checkmate suffix it has been given
+     */
+    public static String toSAN(int move)
+    {
+        StringBuilder sb = new StringBuilder(8);
+        int from = from(move);
+        int to = to(move);
+        int type = type(move);
+
+        if (is(move, CASTLE))
+        {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        }
+        else
+        {
+            if (type == Position.PAWN)
+            {
+                if (is(move, CAPTURE))
+                {
+                    sb.append((char) ('a' + Bitboard.fileOf(from)));
+                }
+            }
+            else
+            {
+                sb.append(Position.charOf(type));
+                if (is(move, FILE_NEEDED))
+                {
+                    sb.append((char) ('a' + Bitboard.fileOf(from)));
+                }
+                if (is(move, RANK_NEEDED))
+                {
+                    sb.append((char) ('1' + Bitboard.rankOf(from)));
+                }
+            }
+            if (is(move, CAPTURE))
+            {
+                sb.append('x');
+            }
+            sb.append((char) ('a' + Bitboard.fileOf(to))).append((char) ('1' + Bitboard.rankOf(to)));
+            if (promotion(move) != Position.EMPTY)
+            {
+                sb.append('=').append(Position.charOf(promotion(move)));
+            }
+        }
+
+        if (is(move, CHECKMATE))
+        {
+            sb.append('#');
+        }
+        else if (is(move, CHECK))
+        {
+            sb.append('+');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds the move notated by SAN among MOVES, reading SAN one character at a time with no regular expression,
+     * substrings, or other allocation. The destination square, piece type, promotion, capture mark, and any file or rank
+     * given are matched against each move. A check or checkmate suffix is accepted but not checked.
+     *
+     * @param san The Standard Algebraic Notation of a move
+     * @param moves Packed legal moves of the player to move, as written by the move generator
+     * @param count The number of moves in MOVES
+     * @return The only move in MOVES that SAN notates, or NONE if SAN is malformed, or notates none or several of them
+     */
+    public static int fromSAN(String san, int[] moves, int count)
+    {
+        int end = san.length();
+        if (end > 0 && (san.charAt(end - 1) == '+' || san.charAt(end - 1) == '#'))
+        {
+            end--;
+        }
+
+        if (end == 3 || end == 5)
+        {
+            char c = san.charAt(0);
+            if ((c == 'O' || c == '0') && san.charAt(1) == '-' && san.charAt(2) == c && (end == 3 || san.charAt(3) == '-' && san.charAt(4) == c))
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    if (is(moves[i], CASTLE) && (to(moves[i]) > from(moves[i])) == (end == 3))
+                    {
+                        return moves[i];
+                    }
+                }
+                return NONE;
+            }
+        }
+
+        // Read from the end: "=" and the promotion piece, then the destination square, then "x"
+        int promotion = Position.EMPTY;
+        if (end >= 4 && san.charAt(end - 2) == '=')
+        {
+            promotion = pieceType(san.charAt(end - 1));
+            if (promotion == Position.EMPTY || promotion == Position.KING)
+            {
+                return NONE;
+            }
+            end -= 2;
+        }
+        if (end < 2)
+        {
+            return NONE;
+        }
+        int toFile = san.charAt(end - 2) - 'a';
+        int toRank = san.charAt(end - 1) - '1';
+        if (toFile < 0 || toFile > 7 || toRank < 0 || toRank > 7)
+        {
+            return NONE;
+        }
+        end -= 2;
+        boolean capture = end > 0 && san.charAt(end - 1) == 'x';
+        if (capture)
+        {
+            end--;
+        }
+
+        // Then from the start: the piece, then the file and rank it leaves, if given
+        int i = 0;
+        int type = Position.PAWN;
+        if (i < end && san.charAt(i) >= 'A' && san.charAt(i) <= 'Z')
+        {
+            type = pieceType(san.charAt(i++));
+            if (type == Position.EMPTY || type == Position.PAWN)
+            {
+                return NONE;
+            }
+        }
+        int fromFile = -1;
+        int fromRank = -1;
+        if (i < end && san.charAt(i) >= 'a' && san.charAt(i) <= 'h')
+        {
+            fromFile = san.charAt(i++) - 'a';
+        }
+        if (i < end && san.charAt(i) >= '1' && san.charAt(i) <= '8')
+        {
+            fromRank = san.charAt(i++) - '1';
+        }
+        if (i != end)
+        {
+            return NONE;
+        }
+
+        // A pawn names its file exactly when it captures, and only a pawn promotes
+        if (type == Position.PAWN ? capture != (fromFile >= 0) || !capture && fromRank >= 0 : promotion != Position.EMPTY)
+        {
+            return NONE;
+        }
+
+        int to = Bitboard.square(toFile, toRank);
+        int found = NONE;
+        for (int k = 0; k < count; k++)
+        {
+            int move = moves[k];
+            if (to(move) != to || type(move) != type || promotion(move) != promotion)
+            {
+                continue;
+            }
+            if (fromFile >= 0 && Bitboard.fileOf(from(move)) != fromFile || fromRank >= 0 && Bitboard.rankOf(from(move)) != fromRank)
+            {
+                continue;
+            }
+            if (capture ? !is(move, CAPTURE) : type == Position.PAWN && is(move, CAPTURE))
+            {
+                continue;
+            }
+            if (found != NONE)
+            {
+                return NONE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    /**
+     * @param c A SAN piece letter
+     * @return The piece type C names, or Position.EMPTY if C is not one
+     */
+    private static int pieceType(char c)
+    {
+        int piece = Position.pieceFromChar(c);
+        return piece == Position.EMPTY || Position.colorOf(piece) != Position.WHITE ? Position.EMPTY : Position.typeOf(piece);
+    }
+}
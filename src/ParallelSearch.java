@@ -0,0 +1,159 @@
+public class ParallelSearch
+{
+    /*
+    A lazy SMP search. Every thread runs a whole iterative-deepening search of its own copy of the position, and they
+    share nothing but the transposition table. The calling thread is the main one and searches every depth, while the
+    helpers skip depths so they run ahead of it. What a helper stores in the table settles or orders whole subtrees for
+    the main thread when it gets there. Once the main thread is done the helpers are stopped, and the answer is that of
+    whichever thread completed the deepest iteration, the main thread winning ties.
+     */
+
+    private final TranspositionTable table; // The table shared by every thread
+    private final Search[] workers; // The search of each thread, the main one first
+
+    /**
+     * Creates a parallel searcher of copies of P, with a table of its own. P itself is never touched, so it may keep
+     * changing during a search.
+     *
+     * @param p A position
+     * @param threads The number of threads to search with, at least 1
+     * @see #ParallelSearch(Position, int, TranspositionTable)
+     */
+    public ParallelSearch(Position p, int threads)
+    {
+        this(p, threads, new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * Creates a parallel searcher of copies of P that share TABLE. P itself is never touched, so it may keep changing
+     * during a search.
+     *
+     * @param p A position
+     * @param threads The number of threads to search with, at least 1
+     * @param table A transposition table
+     * @throws IllegalArgumentException If THREADS is less than 1
+     */
+    public ParallelSearch(Position p, int threads, TranspositionTable table)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("Cannot search with " + threads + " threads");
+        }
+        this.table = table;
+        workers = new Search[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Search(p, table);
+        }
+    }
+
+    /**
+     * Searches with every thread until the main one reaches MAXDEPTH, NODELIMIT nodes, or MILLIS milliseconds, or
+     * stop() is called. The calling thread is the main one; the helpers are started and finished within the call.
+     *
+     * @param maxDepth The deepest iteration to search, at most Search.MAX_PLY
+     * @param nodeLimit The number of nodes after which each thread stops, or Search.NO_LIMIT
+     * @param millis The number of milliseconds after which to stop, or Search.NO_LIMIT
+     * @return The result of the thread that completed the deepest iteration, with the nodes of every thread
+     * @see Search#search(int, long, long, int)
+     */
+    public SearchResult search(int maxDepth, long nodeLimit, long millis)
+    {
+        long start = System.nanoTime();
+        table.newSearch();
+        for (Search w : workers)
+        {
+            w.reset();
+        }
+
+        SearchResult[] results = new SearchResult[workers.length];
+        Thread[] helpers = new Thread[workers.length - 1];
+        for (int i = 1; i < workers.length; i++)
+        {
+            int helper = i;
+            helpers[i - 1] = new Thread(() -> results[helper] = workers[helper].search(maxDepth, nodeLimit, millis, helper), "Search helper " + i);
+            helpers[i - 1].setDaemon(true);
+            helpers[i - 1].start();
+        }
+
+        try
+        {
+            results[0] = workers[0].search(maxDepth, nodeLimit, millis, 0);
+        }
+        finally
+        {
+            for (Search w : workers)
+            {
+                w.stop();
+            }
+            for (Thread t : helpers)
+            {
+                joinUninterruptibly(t);
+            }
+        }
+
+        SearchResult best = results[0];
+        long nodes = 0;
+        for (SearchResult r : results)
+        {
+            // A helper that died has no result, and the main thread's answer stands without it
+            if (r == null)
+            {
+                continue;
+            }
+            nodes += r.getNodes();
+            if (r.getDepth() > best.getDepth() && r.getMove() != PackedMove.NONE)
+            {
+                best = r;
+            }
+        }
+
+        long millisTaken = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(best.getMove(), best.getScore(), best.getDepth(), nodes, millisTaken, best.getPV());
+    }
+
+    /**
+     * Makes the search in progress, possibly on another thread, return as soon as it can with what it has
+     */
+    public void stop()
+    {
+        for (Search w : workers)
+        {
+            w.stop();
+        }
+    }
+
+    /**
+     * @return The number of threads searched with
+     */
+    public int getThreads()
+    {
+        return workers.length;
+    }
+
+    /**
+     * Waits for T to finish, even if interrupted, and interrupts the current thread again afterwards if it was
+     *
+     * @param t A started thread that has been told to finish
+     */
+    private static void joinUninterruptibly(Thread t)
+    {
+        boolean interrupted = false;
+        while (true)
+        {
+            try
+            {
+                t.join();
+                break;
+            }
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
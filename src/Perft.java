@@ -0,0 +1,155 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public final class Perft
+{
+    /*
+    The standard perft positions, as {name, FEN, depth, expected node count}. The depths are picked so that each
+    position runs in about a second while still reaching its en passant, castling, promotion, and pin edge cases.
+     */
+    protected static final String[][] STANDARD_POSITIONS =
+            {
+                {"Start position", "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", "5", "4865609"},
+                {"Kiwipete", "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", "4", "4085603"},
+                {"En passant and rook endgame", "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", "5", "674624"},
+                {"Castling and promotions", "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1", "4", "422333"},
+                {"Promotion with check", "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8", "4", "2103487"},
+                {"Symmetrical middlegame", "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10", "4", "3894594"},
+            };
+
+    private Perft()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Counts the leaf nodes of the legal move tree of P to DEPTH plies, leaving P as it was
+     *
+     * @param p A position
+     * @param depth The number of plies to search, at least 0
+     * @return The number of legal move sequences of length DEPTH from P
+     * @see MoveGenerator#generateLegalMoves(Position, int[])
+     */
+    public static long count(Position p, int depth)
+    {
+        if (depth == 0)
+        {
+            return 1;
+        }
+        return count(p, depth, new int[depth][MoveGenerator.MAX_MOVES]);
+    }
+
+    /**
+     * @param p A position
+     * @param depth The number of plies left to search, at least 1
+     * @param buffers One move buffer per ply left, so no ply allocates
+     * @return The number of legal move sequences of length DEPTH from P
+     */
+    private static long count(Position p, int depth, int[][] buffers)
+    {
+        int[] moves = buffers[depth - 1];
+        int n = MoveGenerator.generateLegalMoves(p, moves);
+
+        // Every legal move at the last ply is a leaf, so there is no need to play them
+        if (depth == 1)
+        {
+            return n;
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < n; i++)
+        {
+            p.makeMove(moves[i]);
+            nodes += count(p, depth - 1, buffers);
+            p.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Splits the perft count of P by first move, for finding which move a wrong count comes from
+     *
+     * @param p A position
+     * @param depth The number of plies to search, at least 1
+     * @return The number of legal move sequences of length DEPTH from P that start with each legal move, keyed by the
+     * SAN of the move, in generation order
+     */
+    public static Map<String, Long> divide(Position p, int depth)
+    {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int n = MoveGenerator.generateLegalMoves(p, moves);
+        MoveGenerator.markDisambiguation(moves, n);
+
+        Map<String, Long> ret = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++)
+        {
+            p.makeMove(moves[i]);
+            ret.put(PackedMove.toSAN(moves[i]), count(p, depth - 1));
+            p.unmakeMove();
+        }
+        return ret;
+    }
+
+    /**
+     * With no arguments, runs every standard position and reports its count, whether it is correct, and the speed.
+     * With a FEN and a depth, prints the divide of that position followed by the total.
+     *
+     * @param args Either nothing, or a FEN and a depth
+     * @throws InvalidSquareException @see
+     * @throws InvalidFENException @see
+     * @throws InvalidPieceException @see
+     * @throws TooManyKingsException @see
+     * @throws InvalidMoveException @see
+     * @see Board#startFromFen(String)
+     */
+    public static void main(String[] args) throws InvalidSquareException, InvalidFENException, InvalidPieceException, TooManyKingsException, InvalidMoveException
+    {
+        Board b = new Board();
+
+        if (args.length >= 2)
+        {
+            b.startFromFen(args[0]);
+            long total = 0;
+            for (Map.Entry<String, Long> e : b.divide(Integer.parseInt(args[1])).entrySet())
+            {
+                System.out.println(e.getKey() + ": " + e.getValue());
+                total += e.getValue();
+            }
+            System.out.println();
+            System.out.println("Nodes: " + total);
+            return;
+        }
+
+        boolean allPassed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (String[] test : STANDARD_POSITIONS)
+        {
+            b.startFromFen(test[1]);
+            int depth = Integer.parseInt(test[2]);
+            long expected = Long.parseLong(test[3]);
+
+            long start = System.nanoTime();
+            long nodes = b.perft(depth);
+            long nanos = System.nanoTime() - start;
+
+            totalNodes += nodes;
+            totalNanos += nanos;
+            allPassed &= nodes == expected;
+            System.out.printf("%-4s %-28s depth %d: %,12d nodes (expected %,d) in %,6d ms, %,12d nodes/s%n",
+                    nodes == expected ? "OK" : "FAIL", test[0], depth, nodes, expected, nanos / 1_000_000, nodesPerSecond(nodes, nanos));
+        }
+        System.out.printf("%s: %,d nodes in %,d ms, %,d nodes/s%n",
+                allPassed ? "All passed" : "FAILED", totalNodes, totalNanos / 1_000_000, nodesPerSecond(totalNodes, totalNanos));
+    }
+
+    /**
+     * @param nodes A number of nodes
+     * @param nanos The nanoseconds taken to count them
+     * @return The number of nodes counted per second
+     */
+    private static long nodesPerSecond(long nodes, long nanos)
+    {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+}
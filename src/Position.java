@@ -0,0 +1,644 @@
+import java.util.Arrays;
+import java.util.Random;
+
+public class Position
+{
+    // Colors
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece types
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    // A piece is COLOR * 6 + TYPE, so white pieces are 0-5 and black pieces are 6-11
+    public static final int EMPTY = -1;
+
+    // Castling right flags
+    public static final int WHITE_OO = 1;
+    public static final int WHITE_OOO = 2;
+    public static final int BLACK_OO = 4;
+    public static final int BLACK_OOO = 8;
+
+    // The FEN letters of the pieces, indexed by piece
+    private static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    // The castling rights that survive a move touching each square. Moving from or capturing on a king or rook home square clears its rights.
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    // Zobrist keys. The hash of a position is the XOR of the keys of everything in it.
+    private static final long[][] PIECE_KEYS = new long[12][64]; // The key of each piece on each square
+    private static final long[] CASTLING_KEYS = new long[16]; // The key of each combination of castling right flags. No rights -> 0.
+    private static final long[] EP_KEYS = new long[8]; // The key of the file of the en passant square, used only when an en passant capture is possible
+    private static final long SIDE_KEY; // The key used when Black is to move
+
+    static
+    {
+        Arrays.fill(CASTLING_MASKS, WHITE_OO | WHITE_OOO | BLACK_OO | BLACK_OOO);
+        CASTLING_MASKS[0] &= ~WHITE_OOO;
+        CASTLING_MASKS[4] &= ~(WHITE_OO | WHITE_OOO);
+        CASTLING_MASKS[7] &= ~WHITE_OO;
+        CASTLING_MASKS[56] &= ~BLACK_OOO;
+        CASTLING_MASKS[60] &= ~(BLACK_OO | BLACK_OOO);
+        CASTLING_MASKS[63] &= ~BLACK_OO;
+
+        // A fixed seed keeps hashes identical from run to run, so they can be stored and compared across sessions
+        Random r = new Random(0x5EED_C0FFEEL);
+        for (int piece = 0; piece < 12; piece++)
+        {
+            for (int sq = 0; sq < 64; sq++)
+            {
+                PIECE_KEYS[piece][sq] = r.nextLong();
+            }
+        }
+        long[] rightKeys = {r.nextLong(), r.nextLong(), r.nextLong(), r.nextLong()};
+        for (int rights = 0; rights < 16; rights++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                if ((rights & (1 << i)) != 0)
+                {
+                    CASTLING_KEYS[rights] ^= rightKeys[i];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++)
+        {
+            EP_KEYS[file] = r.nextLong();
+        }
+        SIDE_KEY = r.nextLong();
+    }
+
+    private final long[] pieces; // The mask of each piece, indexed by piece
+    private final long[] colors; // The mask of all pieces of each color, indexed by color
+    private long occupied; // The mask of all occupied squares
+    private final int[] mailbox; // The piece on each square, or EMPTY
+
+    private int sideToMove; // The color with the next move
+    private int castlingRights; // The castling right flags still available
+    private int epSquare; // The square to which a pawn capturing en passant would move, or -1
+    private int halfmoves; // The number of halfmoves since the last pawn move or capture
+    private int fullmoves; // The number of fullmoves since the start of the game
+    private long hash; // The Zobrist hash of the position, updated incrementally
+
+    /*
+    Each undo record packs everything unmakeMove() needs into one long:
+    bits 0-5 from, 6-11 to, 12-15 promotion piece type + 1, 16-19 captured piece + 1,
+    20-23 castling rights, 24-30 en passant square + 1, 32-63 halfmoves
+     */
+    private long[] undoStack; // The undo records of the moves made since the position was loaded, oldest first
+    private long[] hashStack; // The hash before each move on UNDOSTACK, so unmakeMove() can restore it directly
+    private int ply; // The number of undo records on UNDOSTACK
+
+    /**
+     * Creates an empty position with White to move
+     */
+    public Position()
+    {
+        pieces = new long[12];
+        colors = new long[2];
+        mailbox = new int[64];
+        undoStack = new long[256];
+        hashStack = new long[256];
+        clear();
+    }
+
+    /**
+     * Copies P, including its undo records, so moves made before the copy can still be unmade and their hashes checked
+     * for repetitions. The two positions share nothing, so each can be played through on its own thread.
+     *
+     * @param p A position
+     */
+    public Position(Position p)
+    {
+        pieces = p.pieces.clone();
+        colors = p.colors.clone();
+        mailbox = p.mailbox.clone();
+        undoStack = p.undoStack.clone();
+        hashStack = p.hashStack.clone();
+        occupied = p.occupied;
+        sideToMove = p.sideToMove;
+        castlingRights = p.castlingRights;
+        epSquare = p.epSquare;
+        halfmoves = p.halfmoves;
+        fullmoves = p.fullmoves;
+        hash = p.hash;
+        ply = p.ply;
+    }
+
+    /**
+     * Removes every piece and resets the state to White to move with no castling rights or en passant square
+     */
+    public void clear()
+    {
+        Arrays.fill(pieces, 0);
+        Arrays.fill(colors, 0);
+        Arrays.fill(mailbox, EMPTY);
+        occupied = 0;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        epSquare = -1;
+        halfmoves = 0;
+        fullmoves = 1;
+        hash = 0;
+        ply = 0;
+    }
+
+    /**
+     * Clears the position, then loads it from R
+     *
+     * @param r A position, as parsed from a FEN
+     * @see FENCodec#parse(String)
+     */
+    public void load(PositionRecord r)
+    {
+        clear();
+
+        for (int sq = 0; sq < 64; sq++)
+        {
+            int piece = r.getPiece(sq);
+            if (piece != EMPTY)
+            {
+                putPiece(piece, sq);
+            }
+        }
+
+        setState(r.getSideToMove(), r.getCastlingRights(), r.getEpSquare(), r.getHalfmoves(), r.getFullmoves());
+    }
+
+    /**
+     * @return A snapshot of the position, as a FEN would describe it
+     * @see FENCodec#format(PositionRecord)
+     */
+    public PositionRecord toRecord()
+    {
+        byte[] squares = new byte[64];
+        for (int sq = 0; sq < 64; sq++)
+        {
+            squares[sq] = (byte) mailbox[sq];
+        }
+        return new PositionRecord(squares, sideToMove, castlingRights, epSquare, halfmoves, fullmoves);
+    }
+
+    /**
+     * Places PIECE on the empty square SQ
+     *
+     * @param piece A piece
+     * @param sq A square index
+     */
+    public void putPiece(int piece, int sq)
+    {
+        long b = Bitboard.bit(sq);
+        pieces[piece] |= b;
+        colors[piece / 6] |= b;
+        occupied |= b;
+        mailbox[sq] = piece;
+        hash ^= PIECE_KEYS[piece][sq];
+    }
+
+    /**
+     * Removes the piece standing on SQ, if any
+     *
+     * @param sq A square index
+     * @return The piece removed, or EMPTY
+     */
+    public int removePiece(int sq)
+    {
+        int piece = mailbox[sq];
+        if (piece != EMPTY)
+        {
+            long b = ~Bitboard.bit(sq);
+            pieces[piece] &= b;
+            colors[piece / 6] &= b;
+            occupied &= b;
+            mailbox[sq] = EMPTY;
+            hash ^= PIECE_KEYS[piece][sq];
+        }
+        return piece;
+    }
+
+    /**
+     * Moves the piece on FROM to TO, removing anything standing on TO
+     *
+     * @param from The square index the piece leaves
+     * @param to The square index the piece lands on
+     * @return The piece that was removed from TO, or EMPTY
+     */
+    public int movePiece(int from, int to)
+    {
+        int captured = removePiece(to);
+        putPiece(removePiece(from), to);
+        return captured;
+    }
+
+    /**
+     * Sets everything about the position other than piece placement
+     *
+     * @param sideToMove The color with the next move
+     * @param castlingRights The castling right flags still available
+     * @param epSquare The en passant target square, or -1
+     * @param halfmoves The number of halfmoves since the last pawn move or capture
+     * @param fullmoves The number of fullmoves since the start of the game
+     */
+    public void setState(int sideToMove, int castlingRights, int epSquare, int halfmoves, int fullmoves)
+    {
+        hash ^= stateKey();
+        this.sideToMove = sideToMove;
+        this.castlingRights = castlingRights;
+        this.epSquare = epSquare;
+        this.halfmoves = halfmoves;
+        this.fullmoves = fullmoves;
+        hash ^= stateKey();
+    }
+
+    /**
+     * @return The XOR of the keys of the side to move, the castling rights, and the en passant file if a pawn of the
+     * side to move stands ready to capture en passant. Otherwise positions differing only by an unusable en passant
+     * square would hash differently.
+     */
+    private long stateKey()
+    {
+        long key = CASTLING_KEYS[castlingRights];
+        if (sideToMove == BLACK)
+        {
+            key ^= SIDE_KEY;
+        }
+        if (epSquare != -1 && (Bitboard.PAWN_ATTACKS[sideToMove ^ 1][epSquare] & pieces[sideToMove * 6 + PAWN]) != 0)
+        {
+            key ^= EP_KEYS[Bitboard.fileOf(epSquare)];
+        }
+        return key;
+    }
+
+    /**
+     * Plays the move from FROM to TO for the side to move, pushing an undo record so it can be taken back with
+     * unmakeMove(). Castling is a king moving two files, and en passant is a pawn moving to the en passant square.
+     * The move is assumed to be legal.
+     *
+     * @param from The square index the piece leaves
+     * @param to The square index the piece lands on
+     * @param promotion The piece type to which a pawn promotes, or EMPTY
+     */
+    public void makeMove(int from, int to, int promotion)
+    {
+        int us = sideToMove;
+        int piece = mailbox[from];
+        int type = typeOf(piece);
+        int captured;
+
+        if (ply == undoStack.length)
+        {
+            undoStack = Arrays.copyOf(undoStack, ply * 2);
+            hashStack = Arrays.copyOf(hashStack, ply * 2);
+        }
+        hashStack[ply] = hash;
+        hash ^= stateKey();
+
+        if (type == KING && Math.abs(to - from) == 2)
+        {
+            captured = movePiece(from, to);
+            if (to > from)
+            {
+                movePiece(from + 3, from + 1);
+            }
+            else
+            {
+                movePiece(from - 4, from - 1);
+            }
+        }
+        else if (type == PAWN && to == epSquare)
+        {
+            captured = removePiece(us == WHITE ? to - 8 : to + 8);
+            movePiece(from, to);
+        }
+        else
+        {
+            captured = movePiece(from, to);
+            if (promotion != EMPTY)
+            {
+                removePiece(to);
+                putPiece(pieceOf(us, promotion), to);
+            }
+        }
+
+        undoStack[ply++] = from
+                | (long) to << 6
+                | (long) (promotion + 1) << 12
+                | (long) (captured + 1) << 16
+                | (long) castlingRights << 20
+                | (long) (epSquare + 1) << 24
+                | (long) halfmoves << 32;
+
+        castlingRights &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        epSquare = type == PAWN && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+        halfmoves = type == PAWN || captured != EMPTY ? 0 : halfmoves + 1;
+        if (us == BLACK)
+        {
+            fullmoves++;
+        }
+        sideToMove = us ^ 1;
+        hash ^= stateKey();
+    }
+
+    /**
+     * Plays MOVE for the side to move, pushing an undo record so it can be taken back with unmakeMove()
+     *
+     * @param move A legal packed move
+     * @see PackedMove
+     */
+    public void makeMove(int move)
+    {
+        makeMove(PackedMove.from(move), PackedMove.to(move), PackedMove.promotion(move));
+    }
+
+    /**
+     * Takes back the last move played with makeMove(), restoring the position exactly. Does nothing if no moves
+     * have been made since the position was loaded.
+     */
+    public void unmakeMove()
+    {
+        if (ply == 0)
+        {
+            return;
+        }
+
+        long record = undoStack[--ply];
+        int from = (int) (record & 0x3F);
+        int to = (int) (record >>> 6 & 0x3F);
+        int promotion = (int) (record >>> 12 & 0xF) - 1;
+        int captured = (int) (record >>> 16 & 0xF) - 1;
+
+        sideToMove ^= 1;
+        int us = sideToMove;
+        if (us == BLACK)
+        {
+            fullmoves--;
+        }
+        castlingRights = (int) (record >>> 20 & 0xF);
+        epSquare = (int) (record >>> 24 & 0x7F) - 1;
+        halfmoves = (int) (record >>> 32);
+
+        if (promotion != EMPTY)
+        {
+            removePiece(to);
+            putPiece(pieceOf(us, PAWN), from);
+        }
+        else
+        {
+            movePiece(to, from);
+        }
+
+        int type = typeOf(mailbox[from]);
+        if (type == KING && Math.abs(to - from) == 2)
+        {
+            if (to > from)
+            {
+                movePiece(from + 1, from + 3);
+            }
+            else
+            {
+                movePiece(from - 1, from - 4);
+            }
+        }
+        else if (captured != EMPTY)
+        {
+            putPiece(captured, type == PAWN && to == epSquare ? (us == WHITE ? to - 8 : to + 8) : to);
+        }
+        hash = hashStack[ply];
+    }
+
+    /**
+     * @param sq A square index
+     * @param byColor A color
+     * @return True if any piece of BYCOLOR sees SQ, false otherwise
+     */
+    public boolean isAttacked(int sq, int byColor)
+    {
+        return attackersOf(sq, byColor, occupied) != 0;
+    }
+
+    /**
+     * @param sq A square index
+     * @param byColor A color
+     * @param occ The mask of occupied squares through which sliders are blocked, which need not be the actual occupancy
+     * @return The mask of all pieces of BYCOLOR that see SQ
+     */
+    public long attackersOf(int sq, int byColor, long occ)
+    {
+        int base = byColor * 6;
+        return (Bitboard.PAWN_ATTACKS[byColor ^ 1][sq] & pieces[base + PAWN])
+            | (Bitboard.KNIGHT_ATTACKS[sq] & pieces[base + KNIGHT])
+            | (Bitboard.KING_ATTACKS[sq] & pieces[base + KING])
+            | (Bitboard.bishopAttacks(sq, occ) & (pieces[base + BISHOP] | pieces[base + QUEEN]))
+            | (Bitboard.rookAttacks(sq, occ) & (pieces[base + ROOK] | pieces[base + QUEEN]));
+    }
+
+    /**
+     * @param sq A square index
+     * @return The mask of all squares seen by the piece on SQ, or 0 if SQ is empty
+     */
+    public long attacksFrom(int sq)
+    {
+        int piece = mailbox[sq];
+        if (piece == EMPTY)
+        {
+            return 0;
+        }
+        return switch (typeOf(piece))
+        {
+            case PAWN -> Bitboard.PAWN_ATTACKS[colorOf(piece)][sq];
+            case KNIGHT -> Bitboard.KNIGHT_ATTACKS[sq];
+            case BISHOP -> Bitboard.bishopAttacks(sq, occupied);
+            case ROOK -> Bitboard.rookAttacks(sq, occupied);
+            case QUEEN -> Bitboard.queenAttacks(sq, occupied);
+            default -> Bitboard.KING_ATTACKS[sq];
+        };
+    }
+
+    /**
+     * @param color A color
+     * @param type A piece type
+     * @return The piece of TYPE and COLOR
+     */
+    public static int pieceOf(int color, int type)
+    {
+        return color * 6 + type;
+    }
+
+    /**
+     * @param piece A piece other than EMPTY
+     * @return The color of PIECE
+     */
+    public static int colorOf(int piece)
+    {
+        return piece / 6;
+    }
+
+    /**
+     * @param piece A piece other than EMPTY
+     * @return The type of PIECE
+     */
+    public static int typeOf(int piece)
+    {
+        return piece % 6;
+    }
+
+    /**
+     * @param s A side
+     * @return The color corresponding to S
+     */
+    public static int colorOf(Side s)
+    {
+        return s == Side.WHITE ? WHITE : BLACK;
+    }
+
+    /**
+     * @param color A color
+     * @return The side corresponding to COLOR
+     */
+    public static Side sideOf(int color)
+    {
+        return color == WHITE ? Side.WHITE : Side.BLACK;
+    }
+
+    /**
+     * @param c A FEN piece letter
+     * @return The corresponding piece, or EMPTY if C is not a piece letter
+     */
+    public static int pieceFromChar(char c)
+    {
+        return PIECE_CHARS.indexOf(c);
+    }
+
+    /**
+     * @param piece A piece other than EMPTY
+     * @return The FEN letter of PIECE
+     */
+    public static char charOf(int piece)
+    {
+        return PIECE_CHARS.charAt(piece);
+    }
+
+    /**
+     * @param piece A piece
+     * @return The mask of all squares on which PIECE stands
+     */
+    public long getPieces(int piece)
+    {
+        return pieces[piece];
+    }
+
+    /**
+     * @param color A color
+     * @param type A piece type
+     * @return The mask of all squares on which pieces of TYPE and COLOR stand
+     */
+    public long getPieces(int color, int type)
+    {
+        return pieces[color * 6 + type];
+    }
+
+    /**
+     * @param color A color
+     * @return The mask of all squares on which pieces of COLOR stand
+     */
+    public long getColor(int color)
+    {
+        return colors[color];
+    }
+
+    /**
+     * @return The mask of all occupied squares
+     */
+    public long getOccupied()
+    {
+        return occupied;
+    }
+
+    /**
+     * @param sq A square index
+     * @return The piece on SQ, or EMPTY
+     */
+    public int getPiece(int sq)
+    {
+        return mailbox[sq];
+    }
+
+    /**
+     * @param color A color
+     * @return The square index of COLOR's king, or 64 if COLOR has no king
+     */
+    public int getKingSquare(int color)
+    {
+        return Long.numberOfTrailingZeros(pieces[color * 6 + KING]);
+    }
+
+    /**
+     * @return The Zobrist hash of the position
+     */
+    public long getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * @param pliesAgo The number of moves to look back, at most getPly()
+     * @return The Zobrist hash of the position PLIESAGO moves ago
+     */
+    public long getHash(int pliesAgo)
+    {
+        return pliesAgo == 0 ? hash : hashStack[ply - pliesAgo];
+    }
+
+    /**
+     * @return The number of moves made since the position was loaded that have not been unmade
+     */
+    public int getPly()
+    {
+        return ply;
+    }
+
+    /**
+     * @return The color with the next move
+     */
+    public int getSideToMove()
+    {
+        return sideToMove;
+    }
+
+    /**
+     * @return The castling right flags still available
+     */
+    public int getCastlingRights()
+    {
+        return castlingRights;
+    }
+
+    /**
+     * @return The en passant target square, or -1 if there is none
+     */
+    public int getEpSquare()
+    {
+        return epSquare;
+    }
+
+    /**
+     * @return The number of halfmoves since the last pawn move or capture
+     */
+    public int getHalfmoves()
+    {
+        return halfmoves;
+    }
+
+    /**
+     * @return The number of fullmoves since the start of the game
+     */
+    public int getFullmoves()
+    {
+        return fullmoves;
+    }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+public final class PositionRecord
+{
+    private final byte[] squares; // The piece on each square index (a1 -> 0, ..., h8 -> 63), or Position.EMPTY
+    private final int sideToMove; // Position.WHITE or Position.BLACK
+    private final int castlingRights; // The castling rights, as Position.WHITE_OO etc. OR-ed together
+    private final int epSquare; // The square index to which a pawn capturing en passant would move, or -1
+    private final int halfmoves; // The number of halfmoves since the last pawn move or capture
+    private final int fullmoves; // The number of fullmoves since the start of the game
+
+    /**
+     * Everything a FEN says about a position, with no Board behind it. Two records are equal if their FENs are.
+     *
+     * @param squares The piece on each square index, or Position.EMPTY. Copied.
+     * @param sideToMove Position.WHITE or Position.BLACK
+     * @param castlingRights The castling rights, as Position.WHITE_OO etc. OR-ed together
+     * @param epSquare The square index to which a pawn capturing en passant would move, or -1
+     * @param halfmoves The number of halfmoves since the last pawn move or capture
+     * @param fullmoves The number of fullmoves since the start of the game
+     * @see FENCodec#parse(String)
+     */
+    public PositionRecord(byte[] squares, int sideToMove, int castlingRights, int epSquare, int halfmoves, int fullmoves)
+    {
+        this.squares = squares.clone();
+        this.sideToMove = sideToMove;
+        this.castlingRights = castlingRights;
+        this.epSquare = epSquare;
+        this.halfmoves = halfmoves;
+        this.fullmoves = fullmoves;
+    }
+
+    /**
+     * @param sq A square index
+     * @return The piece on SQ, or Position.EMPTY
+     */
+    public int getPiece(int sq)
+    {
+        return squares[sq];
+    }
+
+    /**
+     * @return Position.WHITE or Position.BLACK
+     */
+    public int getSideToMove()
+    {
+        return sideToMove;
+    }
+
+    /**
+     * @return The castling rights, as Position.WHITE_OO etc. OR-ed together
+     */
+    public int getCastlingRights()
+    {
+        return castlingRights;
+    }
+
+    /**
+     * @return The square index to which a pawn capturing en passant would move, or -1
+     */
+    public int getEpSquare()
+    {
+        return epSquare;
+    }
+
+    /**
+     * @return The number of halfmoves since the last pawn move or capture
+     */
+    public int getHalfmoves()
+    {
+        return halfmoves;
+    }
+
+    /**
+     * @return The number of fullmoves since the start of the game
+     */
+    public int getFullmoves()
+    {
+        return fullmoves;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof PositionRecord))
+        {
+            return false;
+        }
+        PositionRecord r = (PositionRecord) obj;
+        return sideToMove == r.sideToMove && castlingRights == r.castlingRights && epSquare == r.epSquare &&
+                halfmoves == r.halfmoves && fullmoves == r.fullmoves && Arrays.equals(squares, r.squares);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return ((Arrays.hashCode(squares) * 31 + sideToMove) * 31 + castlingRights) * 31 + epSquare;
+    }
+
+    /**
+     * @return The FEN of the position
+     * @see FENCodec#format(PositionRecord)
+     */
+    @Override
+    public String toString()
+    {
+        return FENCodec.format(this);
+    }
+}
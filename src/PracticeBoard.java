@@ -4,22 +4,29 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.function.Consumer;
 
 public class PracticeBoard extends VisualBoard
 {
     private int moveTime;
     private int tpm;
     private int numReveals;
+    private int thinkTime; // The milliseconds the computer searches for a move once the line has run out
+    private int threads; // The number of threads the computer searches with
 
     private int wrongCount;
     private MoveTreeNode curr;
+    private boolean outOfBook; // True once the line has run out and the player has chosen to play on, false otherwise
+    private int freeMoves; // The number of moves played since the line ran out
 
     private final Random r;
     private final long seed;
 
     private final Runnable compMover;
+    private SwingWorker<SearchResult, Void> searcher; // The search for the computer's move in progress, or null
 
     private final ArrayList<Integer> undoneMoveIndices;
+    private final ArrayList<MoveTreeNode> path; // The node of each position before the current one, from the root
 
     private int revealCount;
 
@@ -30,10 +37,17 @@ public class PracticeBoard extends VisualBoard
         moveTime = 200;
         tpm = 3;
         numReveals = 3;
+        thinkTime = 1000;
+        threads = Runtime.getRuntime().availableProcessors();
+
+        // A line may repeat the position and play on, so a repetition only ends the game once the line has run out
+        board.setRepetitionDraws(false);
 
         wrongCount = 1;
         curr = node;
         playable = curr != null;
+        outOfBook = false;
+        freeMoves = 0;
 
         r = new Random();
         seed = r.nextLong();
@@ -49,6 +63,7 @@ public class PracticeBoard extends VisualBoard
         };
 
         undoneMoveIndices = new ArrayList<>();
+        path = new ArrayList<>();
 
         revealCount = 1;
     }
@@ -67,6 +82,10 @@ public class PracticeBoard extends VisualBoard
         reroll.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                if (searcher != null)
+                {
+                    return;
+                }
                 try
                 {
                     undoOnce();
@@ -83,6 +102,10 @@ public class PracticeBoard extends VisualBoard
         idk.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
+                if (searcher != null)
+                {
+                    return;
+                }
                 revealAnswers();
             }
         });
@@ -101,6 +124,11 @@ public class PracticeBoard extends VisualBoard
                 int exit = JOptionPane.showOptionDialog(null, "Are you sure you would like to restart?", "Play again?", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, YN_OPTIONS, YN_OPTIONS[0]);
                 if (exit == 0)
                 {
+                    // The search cannot be interrupted, but what it finds is no longer wanted
+                    if (searcher != null)
+                    {
+                        searcher.cancel(false);
+                    }
                     host.replaySequence();
                 }
             }
@@ -128,7 +156,7 @@ public class PracticeBoard extends VisualBoard
     @Override
     protected void squareClicked(VisualSquare vs) throws InvalidSquareException, InvalidMoveException, InvalidPieceException, TooManyKingsException
     {
-        if (playable)
+        if (playable && searcher == null)
         {
             Square s = vs.getSquare();
             Man m = s.getPiece();
@@ -165,9 +193,20 @@ public class PracticeBoard extends VisualBoard
 
                     Move move = new Move(piece, s, board, c);
 
-                    if (curr.isChild(move.toString()))
+                    // Once the line has run out, any legal move will do
+                    if (outOfBook)
+                    {
+                        undoneMoveIndices.clear();
+                        move(move);
+                        freeMoves++;
+                        if (!checkGameOver())
+                        {
+                            SwingUtilities.invokeLater(compMover);
+                        }
+                    }
+                    else if (curr.isChild(move.toString()))
                     {
-                        curr = curr.getChild(move.toString());
+                        advance(curr.getChild(move.toString()));
                         undoneMoveIndices.clear();
                         move(move);
                         playable = false;
@@ -247,25 +286,113 @@ public class PracticeBoard extends VisualBoard
      */
     private void playComputerMove()
     {
+        if (outOfBook)
+        {
+            playSearchedMove();
+            return;
+        }
+
         Utils.sleepy(moveTime);
 
         int kidIndex = r.nextInt(curr.getChildren().size());
-        curr = curr.getChild(kidIndex);
+        MoveTreeNode kid = curr.getChild(kidIndex);
         try
         {
-            move(new Move(curr.getMove(), board));
+            // The tree was validated when loaded, so this only wraps the packed move
+            move(PGNManager.toMove(kid, board));
         }
         catch (Exception e)
         {
-            String s = createLineString();
-            System.out.printf("The selected move (%s) caused an exception. Please check the PGN. For reference, the seed was %d and the line went %s\n", curr.getMove(), seed, s);
-            System.out.println("Error message: " + e.getMessage());
-            System.exit(1);
+            JOptionPane.showMessageDialog(null, String.format("The move %s could not be played (%s). Please check the PGN. For reference, the seed was %d and the line went:\n%s", kid.getMove(), e.getMessage(), seed, createLineString()), "Error: Invalid Move", JOptionPane.ERROR_MESSAGE);
+            playable = false;
+            exitSequence();
+            return;
         }
+        advance(kid);
 
         checkWin();
     }
 
+    /**
+     * Has the computer play the best move it finds in THINKTIME, for when the line has run out
+     *
+     * @see #searchInBackground(Consumer)
+     */
+    private void playSearchedMove()
+    {
+        searchInBackground(result -> {
+            try
+            {
+                move(new Move(result.getMove(), board));
+            }
+            catch (Exception e)
+            {
+                JOptionPane.showMessageDialog(null, String.format("The computer could not play its move (%s). The line went:\n%s", e.getMessage(), createLineString()), "Error: Invalid Move", JOptionPane.ERROR_MESSAGE);
+                playable = false;
+                exitSequence();
+                return;
+            }
+            freeMoves++;
+
+            checkGameOver();
+        });
+    }
+
+    /**
+     * Searches the position for THINKTIME off the event dispatch thread, so the window stays responsive, then hands
+     * the result to THEN back on it. The board takes no moves, undos, or redos until then.
+     *
+     * @param then What to do with the result, on the event dispatch thread
+     * @see Board#search(long, int)
+     */
+    private void searchInBackground(Consumer<SearchResult> then)
+    {
+        searcher = new SwingWorker<SearchResult, Void>()
+        {
+            @Override
+            protected SearchResult doInBackground()
+            {
+                return board.search(thinkTime, threads);
+            }
+
+            @Override
+            protected void done()
+            {
+                // Restarting cancels the search, and the board it was for is gone
+                if (isCancelled())
+                {
+                    return;
+                }
+                searcher = null;
+                try
+                {
+                    then.accept(get());
+                }
+                catch (Exception e)
+                {
+                    JOptionPane.showMessageDialog(null, String.format("The computer could not find a move (%s). The line went:\n%s", e.getCause(), createLineString()), "Error: Search Failed", JOptionPane.ERROR_MESSAGE);
+                    e.printStackTrace();
+                    playable = false;
+                    exitSequence();
+                }
+            }
+        };
+        searcher.execute();
+    }
+
+    /**
+     * Moves CURR along KID, to the node holding the continuations from the position KID leads to, which is not KID
+     * itself if the move transposes
+     *
+     * @param kid A child of CURR
+     * @see MoveTreeNode#getPositionNode()
+     */
+    private void advance(MoveTreeNode kid)
+    {
+        path.add(curr);
+        curr = kid.getPositionNode();
+    }
+
     /**
      * Checks to see if the line is finished.
      *
@@ -283,20 +410,53 @@ public class PracticeBoard extends VisualBoard
     }
 
     /**
-     * Called when player finishes their line. Congratulates player and ends program/sets up restart.
+     * Checks to see if the game played on past the line is over, and if so, runs the exit sequence. VisualBoard has
+     * already announced the result.
+     *
+     * @return True if the game is over, false otherwise
+     * @see VisualBoard#move(Move)
+     */
+    private boolean checkGameOver()
+    {
+        if (board.getState() != GameState.IN_PROGRESS)
+        {
+            exitSequence();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when player finishes their line. Congratulates player, then lets them play on against the computer if the
+     * game is not over and they would like to. Otherwise ends program/sets up restart.
      */
     private void playerWins()
     {
         Utils.sleepy(500);
 
         JOptionPane.showMessageDialog(null, String.format("You did it! You played the correct line!\nJust so you remember, the line went:\n%s\nGreat job! Thanks for playing!", createLineString())); // TODO: Make this better
+        if (board.getState() == GameState.IN_PROGRESS)
+        {
+            int playOn = JOptionPane.showOptionDialog(null, "Would you like to keep playing from here against the computer?", "Play on?", JOptionPane.DEFAULT_OPTION, JOptionPane.PLAIN_MESSAGE, null, YN_OPTIONS, YN_OPTIONS[0]);
+            if (playOn == 0)
+            {
+                outOfBook = true;
+                board.setRepetitionDraws(true);
+                playable = true;
+                if (board.getToMove() != playSide)
+                {
+                    SwingUtilities.invokeLater(compMover);
+                }
+                return;
+            }
+        }
         exitSequence();
         Random temp = new Random();
         temp.nextInt();
     }
 
     /**
-     * Sets CURR to N if it is null. Does nothing otherwise.
+     * Sets CURR to N if it is null. Does nothing otherwise. N should have been validated, so no SAN is read in practice.
      *
      * @param n A MoveTreeNode, probably a root node
      * @throws TooManyKingsException @see
@@ -304,6 +464,7 @@ public class PracticeBoard extends VisualBoard
      * @throws InvalidSquareException @see
      * @throws InvalidPieceException @see
      * @see Board#loadFromFen(FEN)
+     * @see PGNManager#validate(MoveTreeNode, Board)
      */
     protected void setRoot(MoveTreeNode n) throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
@@ -350,7 +511,7 @@ public class PracticeBoard extends VisualBoard
     private String createLineString()
     {
         StringBuilder sb = new StringBuilder();
-        boolean whiteFlag = board.getFenHistory().get(0).getToMove() == Side.WHITE;
+        boolean whiteFlag = board.getStartFen().getToMove() == Side.WHITE;
         int i = 1;
         int len = 0;
         for (Move m : board.getMoveHistory())
@@ -407,6 +568,10 @@ public class PracticeBoard extends VisualBoard
     @Override
     protected void undoMove() throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
+        if (searcher != null)
+        {
+            return;
+        }
         for (int i = 0; i < 2; i++)
         {
             undoOnce();
@@ -414,7 +579,9 @@ public class PracticeBoard extends VisualBoard
     }
 
     /**
-     * Undoes a single move, then updates CURR
+     * Undoes a single move, then steps CURR back along PATH, since a node reached by transposition is not the child of
+     * the node before it. Moves played after the line ran out are simply undone, and undoing past the end of the line
+     * goes back to practicing it.
      * @throws TooManyKingsException @see
      * @throws InvalidMoveException @see
      * @throws InvalidSquareException @see
@@ -423,13 +590,23 @@ public class PracticeBoard extends VisualBoard
      */
     protected void undoOnce() throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
+        // Moves played past the end of the line have no nodes to step back along
+        if (freeMoves > 0)
+        {
+            super.undoMove();
+            freeMoves--;
+            return;
+        }
+        outOfBook = false;
+        board.setRepetitionDraws(false);
+
         super.undoMove();
-        if (!curr.isRoot())
+        if (!path.isEmpty())
         {
-            MoveTreeNode p = curr.getParent();
+            MoveTreeNode p = path.remove(path.size() - 1);
             for (int j = 0; j < p.getChildren().size(); j++)
             {
-                if (p.getChild(j) == curr)
+                if (p.getChild(j).getPositionNode() == curr)
                 {
                     undoneMoveIndices.add(j);
                     break;
@@ -451,20 +628,45 @@ public class PracticeBoard extends VisualBoard
     @Override
     protected void redoMove() throws TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException
     {
-        if (undoneMoveIndices.size() >= 2)
+        if (searcher == null && undoneMoveIndices.size() >= 2)
         {
             for (int i = 0; i < 2; i++)
             {
                 super.redoMove();
-                curr = curr.getChild(undoneMoveIndices.remove(undoneMoveIndices.size() - 1));
+                advance(curr.getChild(undoneMoveIndices.remove(undoneMoveIndices.size() - 1)));
             }
         }
     }
 
     /**
-     * Reveals the answers via dialog box up to 3 times
+     * Reveals the answers via dialog box up to 3 times. Once the line has run out, the answer is the computer's move,
+     * which is searched for first.
+     *
+     * @see #searchInBackground(Consumer)
      */
     private void revealAnswers()
+    {
+        if (outOfBook)
+        {
+            searchInBackground(result -> showAnswers("The line is over, but the computer would play:\n" + new Move(result.getMove(), board) + '\n'));
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("The correct moves are:\n");
+        for (MoveTreeNode n : curr.getChildren())
+        {
+            sb.append(n.getMove()).append('\n');
+        }
+        showAnswers(sb.toString());
+    }
+
+    /**
+     * Shows ANSWERS as a reveal, and counts it, ending the practice if it was the last one
+     *
+     * @param answers The moves revealed, with a line saying what they are
+     */
+    private void showAnswers(String answers)
     {
         StringBuilder sb = new StringBuilder();
 
@@ -475,11 +677,7 @@ public class PracticeBoard extends VisualBoard
             sb.append("You've used all your reveals! \n");
         }
 
-        sb.append("The correct moves are:\n");
-        for (MoveTreeNode n : curr.getChildren())
-        {
-            sb.append(n.getMove()).append('\n');
-        }
+        sb.append(answers);
         sb.append('\n');
 
         if (numReveals >= 0 && revealCount == numReveals - 1)
@@ -515,4 +713,14 @@ public class PracticeBoard extends VisualBoard
     {
         numReveals = nr;
     }
+
+    protected void setThinkTime(int tt)
+    {
+        thinkTime = tt;
+    }
+
+    protected void setThreads(int t)
+    {
+        threads = t;
+    }
 }
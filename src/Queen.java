@@ -23,12 +23,8 @@ public class Queen extends Piece
      */
     @Override
     protected ArrayList<Square> calcVisionFromSquare(Square s) {
-        ArrayList<Square> ret = new ArrayList<>();
-        ret.addAll(rank.getUnblockedVision(s));
-        ret.addAll(file.getUnblockedVision(s));
-        ret.addAll(diagonal1.getUnblockedVision(s));
-        ret.addAll(diagonal2.getUnblockedVision(s));
-        return ret;
+        Board b = s.getBoard();
+        return b.getSquares(Bitboard.queenAttacks(s.getIndex(), b.getPosition().getOccupied()));
     }
 
     /**
@@ -0,0 +1,348 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class Repertoire
+{
+    /*
+    The file is a header, then a flat array of fixed-size node records, then a string table.
+
+    Header: MAGIC, VERSION, the number of nodes, the number of strings, and the number of tag pairs of the game, as
+    ints.
+    Node: the packed move (PackedMove.NONE for the root), the index of the parent (-1 for the root), the index of the
+    first child, the number of children, the index of the node holding the continuations from the position after the
+    move (the node itself unless the move transposes), and the index in the string table of the comment on the move (-1
+    if none), as ints.
+    String table: the offset in the file of each string, as ints, then the strings in UTF-8, each preceded by its length
+    in bytes as an int. String 0 is the FEN of the starting position, and the strings after it are the name and then the
+    value of each tag pair, in the order the game had them.
+
+    Nodes are in breadth-first order from the root at index 0, so the children of a node are contiguous. All ints are
+    big-endian.
+     */
+
+    private static final int MAGIC = 0x4F524550; // "OREP"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 20; // The bytes before the first node
+    private static final int NODE_SIZE = 24; // The bytes of each node
+
+    private static final int MOVE = 0; // The offset of each field in a node
+    private static final int PARENT = 4;
+    private static final int FIRST_CHILD = 8;
+    private static final int CHILD_COUNT = 12;
+    private static final int POSITION_NODE = 16;
+    private static final int COMMENT = 20;
+
+    private final File file; // The repertoire file
+    private final ByteBuffer buffer; // The whole file, mapped read-only
+    private final int size; // The number of nodes
+    private final int strings; // The number of strings in the string table
+    private final int tags; // The number of tag pairs of the game
+
+    /**
+     * Maps F into memory. Nothing is read beyond the header until asked for, so opening takes the same time for any size
+     * of file, and every process opening the same file shares its pages.
+     *
+     * @param f A repertoire file, as written by write()
+     * @throws IOException if F cannot be read or is not a repertoire file
+     * @see #write(MoveTreeNode, Board, File)
+     */
+    public Repertoire(File f) throws IOException
+    {
+        file = f;
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ))
+        {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException(f.getName() + " is not a repertoire file");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION)
+        {
+            throw new IOException(f.getName() + " is a repertoire file of unsupported version " + version);
+        }
+        size = buffer.getInt(8);
+        strings = buffer.getInt(12);
+        tags = buffer.getInt(16);
+        if (size < 1 || tags < 0 || strings < 1 + 2L * tags || HEADER_SIZE + (long) size * NODE_SIZE + 4L * strings > buffer.capacity())
+        {
+            throw new IOException(f.getName() + " is truncated");
+        }
+    }
+
+    /**
+     * @return The repertoire file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return The number of nodes, including the root
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return The FEN of the starting position
+     */
+    public String getFen()
+    {
+        return getString(0);
+    }
+
+    /**
+     * @return The tag pairs of the game, by name in the order the game had them
+     */
+    public Map<String, String> getTags()
+    {
+        LinkedHashMap<String, String> ret = new LinkedHashMap<>();
+        for (int i = 0; i < tags; i++)
+        {
+            ret.put(getString(1 + 2 * i), getString(2 + 2 * i));
+        }
+        return ret;
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The packed move of NODE, or PackedMove.NONE for the root
+     * @see PackedMove
+     */
+    public int getMove(int node)
+    {
+        return field(node, MOVE);
+    }
+
+    /**
+     * @param node The index of a node other than the root
+     * @return The SAN of the move of NODE
+     */
+    public String getSAN(int node)
+    {
+        return PackedMove.toSAN(getMove(node));
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The index of the parent of NODE, or -1 for the root
+     */
+    public int getParent(int node)
+    {
+        return field(node, PARENT);
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The number of children of NODE
+     */
+    public int getChildCount(int node)
+    {
+        return field(node, CHILD_COUNT);
+    }
+
+    /**
+     * @param node The index of a node
+     * @param i The index of a child of NODE, from 0 for its main line
+     * @return The index of child I of NODE
+     */
+    public int getChild(int node, int i)
+    {
+        if (i < 0 || i >= getChildCount(node))
+        {
+            throw new IndexOutOfBoundsException("Child " + i + " of node " + node);
+        }
+        return field(node, FIRST_CHILD) + i;
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The index of the node holding the continuations from the position after the move of NODE
+     * @see MoveTreeNode#getPositionNode()
+     */
+    public int getPositionNode(int node)
+    {
+        return field(node, POSITION_NODE);
+    }
+
+    /**
+     * @param node The index of a node
+     * @return The comment on the move of NODE, or null if it has none
+     */
+    public String getComment(int node)
+    {
+        int i = field(node, COMMENT);
+        return i < 0 ? null : getString(i);
+    }
+
+    /**
+     * @param node The index of a node
+     * @param offset The offset of a field in a node
+     * @return The field at OFFSET of NODE
+     */
+    private int field(int node, int offset)
+    {
+        if (node < 0 || node >= size)
+        {
+            throw new IndexOutOfBoundsException("Node " + node + " of " + size);
+        }
+        return buffer.getInt(HEADER_SIZE + node * NODE_SIZE + offset);
+    }
+
+    /**
+     * @param i The index of a string in the string table
+     * @return String I
+     */
+    private String getString(int i)
+    {
+        int offset = buffer.getInt(HEADER_SIZE + size * NODE_SIZE + 4 * i);
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens the move tree of the repertoire, transpositions and tags included. Its nodes are read from the file as
+     * they are reached, so opening takes the same time for any size of file, and the tree is only read whole if it is
+     * changed. The file was written from a replayed tree, so nothing is parsed or replayed.
+     *
+     * @return The root of the move tree
+     * @throws InvalidFENException if the starting position is invalid
+     * @see MoveTreeStore#MoveTreeStore(Repertoire)
+     */
+    public MoveTreeNode toTree() throws InvalidFENException
+    {
+        return new MoveTreeStore(this).getRoot();
+    }
+
+    /**
+     * Writes the tree and tags of ROOT to F, replaying it on B for the packed moves
+     *
+     * @param root The root node of a move tree
+     * @param b A Board. Left at the starting position of the tree.
+     * @param f The file to write, replaced if it exists
+     * @throws IOException if F cannot be written
+     * @throws InvalidMoveException if a move of the tree is illegal
+     * @see PGNManager#replay(MoveTreeNode, Board)
+     */
+    public static void write(MoveTreeNode root, Board b, File f) throws IOException, InvalidMoveException, InvalidPieceException, TooManyKingsException, InvalidSquareException
+    {
+        assert root.isRoot();
+
+        PGNManager.replay(root, b);
+
+        // Number the nodes breadth first, so the children of each node are numbered consecutively. ORDER is its own
+        // queue, as the nodes are queued in the order they are numbered.
+        MoveTreeStore store = root.getStore();
+        int[] order = new int[store.size()]; // The node with each number
+        int[] index = new int[store.size()]; // The number of each node
+        int count = 0; // The number of nodes numbered
+        order[count++] = root.getIndex();
+        for (int i = 0; i < count; i++)
+        {
+            index[order[i]] = i;
+            for (int c = store.getFirstChild(order[i]); c != MoveTreeStore.NONE; c = store.getNextSibling(c))
+            {
+                order[count++] = c;
+            }
+        }
+
+        // The FEN, then the name and value of each tag
+        ArrayList<byte[]> table = new ArrayList<>();
+        table.add(root.getFen().toString().getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, String> tag : root.getTags().entrySet())
+        {
+            table.add(tag.getKey().getBytes(StandardCharsets.UTF_8));
+            table.add(tag.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        int strings = table.size();
+        int stringsStart = HEADER_SIZE + count * NODE_SIZE;
+
+        // Streamed out node by node, so only the numbering is held in memory alongside the tree
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(strings);
+            out.writeInt(root.getTags().size());
+
+            int next = 1; // The index of the first child of the next node with children
+            for (int i = 0; i < count; i++)
+            {
+                int n = order[i];
+                int children = store.getChildCount(n);
+                out.writeInt(store.getCode(n));
+                out.writeInt(i == 0 ? -1 : index[store.getParent(n)]);
+                out.writeInt(children == 0 ? 0 : next);
+                out.writeInt(children);
+                out.writeInt(index[store.getPositionNode(n)]);
+                out.writeInt(-1); // The tree keeps no comments
+                next += children;
+            }
+
+            int offset = stringsStart + 4 * strings;
+            for (byte[] string : table)
+            {
+                out.writeInt(offset);
+                offset += 4 + string.length;
+            }
+            for (byte[] string : table)
+            {
+                out.writeInt(string.length);
+                out.write(string);
+            }
+        }
+    }
+
+    /**
+     * Converts between PGN and repertoire files, by the extension of the first argument. A PGN is written with its
+     * transpositions collapsed, so every position is stored once.
+     *
+     * @param args The file to convert from (.pgn or .rep), then the file to write
+     */
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length != 2)
+        {
+            System.out.println("Usage: Repertoire <in.pgn> <out.rep> | <in.rep> <out.pgn>");
+            return;
+        }
+
+        File in = new File(args[0]);
+        File out = new File(args[1]);
+        Board b = new Board();
+
+        long start = System.nanoTime();
+        if (in.getName().endsWith(".rep"))
+        {
+            try (BufferedWriter w = Files.newBufferedWriter(out.toPath()))
+            {
+                PGNManager.writePGN(new Repertoire(in).toTree(), w, PGNWriter.LINE_WIDTH);
+            }
+        }
+        else
+        {
+            MoveTreeNode root = PGNManager.collapseTranspositions(PGNManager.convertPGNToTree(in), b);
+            write(root, b, out);
+        }
+        System.out.printf("Wrote %s in %d ms\n", out, (System.nanoTime() - start) / 1000000);
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+public class RepetitionTable
+{
+    private long[] keys; // The position hashes, indexed by slot
+    private int[] counts; // The number of times the hash in the same slot has occurred. A slot with count 0 is free for that hash to reuse.
+    private boolean[] used; // True if the slot holds a hash, false otherwise
+    private int size; // The number of used slots
+
+    /**
+     * Creates an empty table
+     */
+    public RepetitionTable()
+    {
+        keys = new long[64];
+        counts = new int[64];
+        used = new boolean[64];
+        size = 0;
+    }
+
+    /**
+     * Records one more occurrence of the position with HASH
+     *
+     * @param hash A position hash
+     * @return The number of times the position has now occurred
+     */
+    public int add(long hash)
+    {
+        if (size * 2 >= keys.length)
+        {
+            grow();
+        }
+        int i = slot(hash);
+        if (!used[i])
+        {
+            used[i] = true;
+            keys[i] = hash;
+            size++;
+        }
+        return ++counts[i];
+    }
+
+    /**
+     * Forgets one occurrence of the position with HASH. Does nothing if it has not occurred.
+     *
+     * @param hash A position hash
+     */
+    public void remove(long hash)
+    {
+        int i = slot(hash);
+        if (used[i] && counts[i] > 0)
+        {
+            counts[i]--;
+        }
+    }
+
+    /**
+     * @param hash A position hash
+     * @return The number of times the position with HASH has occurred
+     */
+    public int count(long hash)
+    {
+        int i = slot(hash);
+        return used[i] ? counts[i] : 0;
+    }
+
+    /**
+     * Forgets every position
+     */
+    public void clear()
+    {
+        Arrays.fill(used, false);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Linear probing from the low bits of the hash, which are already uniformly distributed
+     *
+     * @param hash A position hash
+     * @return The slot holding HASH, or the free slot where it would go
+     */
+    private int slot(long hash)
+    {
+        int mask = keys.length - 1;
+        int i = (int) hash & mask;
+        while (used[i] && keys[i] != hash)
+        {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Doubles the capacity and reinserts every hash
+     */
+    private void grow()
+    {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int j = 0; j < oldKeys.length; j++)
+        {
+            if (oldUsed[j])
+            {
+                int i = slot(oldKeys[j]);
+                used[i] = true;
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+}
@@ -25,10 +25,8 @@ public class Rook extends Piece
     @Override
     protected ArrayList<Square> calcVisionFromSquare(Square s)
     {
-        ArrayList<Square> ret = new ArrayList<>();
-        ret.addAll(rank.getUnblockedVision(s));
-        ret.addAll(file.getUnblockedVision(s));
-        return ret;
+        Board b = s.getBoard();
+        return b.getSquares(Bitboard.rookAttacks(s.getIndex(), b.getPosition().getOccupied()));
     }
 
     /**
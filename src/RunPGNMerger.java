@@ -1,7 +1,165 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.stream.Stream;
+
 public class RunPGNMerger
 {
-    public static void main(String[] args)
+    private static final String USAGE = "Usage: RunPGNMerger [-o <out.pgn | out.rep>] [-t] [-j <threads>] <file | directory | glob>...\n" +
+            "  -o  the file to write, as a repertoire file if it ends in .rep (default: PGN to standard output)\n" +
+            "  -t  merge transpositions, so every position is stored once\n" +
+            "  -j  the number of threads to parse and merge with (default: one per processor)\n" +
+            "A directory stands for every .pgn below it. A glob, such as \"openings/**/*.pgn\", is matched from the\n" +
+            "directory before its first wildcard. With no arguments, opens the PGN Merger window.";
+
+    /**
+     * Opens the PGN Merger window, or with arguments, merges the PGN files they name without a window
+     *
+     * @param args Nothing, or the options and files to merge, as in USAGE
+     * @see PGNMerger
+     * @see PGNLoader#loadAndMerge(File[], int, java.util.function.Consumer)
+     */
+    public static void main(String[] args) throws Exception
     {
-        new PGNMerger();
+        if (args.length == 0)
+        {
+            new PGNMerger();
+            return;
+        }
+
+        File out = null;
+        boolean collapse = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        ArrayList<File> files = new ArrayList<>();
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                switch (args[i])
+                {
+                    case "-o" -> out = new File(args[++i]);
+                    case "-t" -> collapse = true;
+                    case "-j" -> threads = Integer.parseInt(args[++i]);
+                    case "-h", "--help" -> {
+                        System.out.println(USAGE);
+                        return;
+                    }
+                    default -> files.addAll(expand(args[i]));
+                }
+            }
+        }
+        catch (ArrayIndexOutOfBoundsException | NumberFormatException e)
+        {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (files.isEmpty())
+        {
+            System.err.println("No PGN files found");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        Board b = new Board();
+        int[] parsed = {0};
+        MoveTreeNode root = PGNLoader.loadAndMerge(files.toArray(new File[0]), threads, collapse ? b : null, f -> {
+            synchronized (parsed)
+            {
+                System.err.printf("Parsed %d of %d: %s\n", ++parsed[0], files.size(), f);
+            }
+        });
+
+        if (out != null && out.getName().endsWith(".rep"))
+        {
+            Repertoire.write(root, b, out);
+        }
+        else
+        {
+            try (Writer w = out == null ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)) : Files.newBufferedWriter(out.toPath()))
+            {
+                PGNManager.writePGN(root, w, PGNWriter.LINE_WIDTH);
+                w.write('\n');
+            }
+        }
+        System.err.printf("Merged %d files in %d ms\n", files.size(), (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Expands an argument to the PGN files it names. A directory is searched recursively for .pgn files, and a glob is
+     * matched against every file below the directory before its first wildcard. Files are sorted by path, so a merge
+     * comes out the same however the file system lists them.
+     *
+     * @param arg A file, directory, or glob
+     * @return The files ARG names
+     * @throws IOException if a directory cannot be searched, or ARG names nothing
+     */
+    private static ArrayList<File> expand(String arg) throws IOException
+    {
+        Path path;
+        PathMatcher matcher;
+
+        int wildcard = firstWildcard(arg);
+        if (wildcard < 0)
+        {
+            path = Paths.get(arg);
+            if (Files.isRegularFile(path))
+            {
+                ArrayList<File> one = new ArrayList<>();
+                one.add(path.toFile());
+                return one;
+            }
+            if (!Files.isDirectory(path))
+            {
+                throw new IOException(arg + " does not exist");
+            }
+            matcher = p -> p.getFileName().toString().toLowerCase().endsWith(".pgn");
+        }
+        else
+        {
+            int slash = arg.lastIndexOf('/', wildcard);
+            path = Paths.get(slash < 0 ? "." : arg.substring(0, slash + 1));
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg.substring(slash + 1));
+        }
+
+        Path base = path;
+        ArrayList<File> found = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(base))
+        {
+            walk.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(wildcard < 0 ? p : base.relativize(p)))
+                    .sorted()
+                    .forEach(p -> found.add(p.toFile()));
+        }
+        if (found.isEmpty() && wildcard >= 0)
+        {
+            throw new IOException(arg + " matches no files");
+        }
+        return found;
+    }
+
+    /**
+     * @param arg A path, which may be a glob
+     * @return The index of the first glob wildcard in ARG, or -1 if it has none
+     */
+    private static int firstWildcard(String arg)
+    {
+        for (int i = 0; i < arg.length(); i++)
+        {
+            char c = arg.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '{')
+            {
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -0,0 +1,62 @@
+public class SANCache
+{
+    /*
+    A direct-mapped table from a position hash and the SAN of a move played from it to the packed move. Each pair has one
+    slot, chosen from the bits of both, and a new pair simply replaces whatever was there, so the table never grows and
+    a lookup never allocates. Replaying a repertoire passes through the same positions and moves again and again, which
+    is what keeps the hit rate high despite the small size.
+     */
+
+    private static final int SIZE = 4096; // The number of slots. A power of two.
+
+    private final long[] hashes; // The position hash of the pair in each slot
+    private final String[] sans; // The SAN of the pair in each slot, or null if the slot is empty
+    private final int[] moves; // The packed move of the pair in each slot
+
+    /**
+     * Creates an empty cache
+     */
+    public SANCache()
+    {
+        hashes = new long[SIZE];
+        sans = new String[SIZE];
+        moves = new int[SIZE];
+    }
+
+    /**
+     * @param hash A position hash
+     * @param san The SAN of a move from the position with HASH
+     * @return The packed move stored for HASH and SAN, or PackedMove.NONE if there is none
+     */
+    public int get(long hash, String san)
+    {
+        int i = slot(hash, san);
+        String s = sans[i];
+        return hashes[i] == hash && s != null && (s == san || s.equals(san)) ? moves[i] : PackedMove.NONE;
+    }
+
+    /**
+     * Stores MOVE for HASH and SAN, replacing the pair that had the same slot
+     *
+     * @param hash A position hash
+     * @param san The SAN of MOVE
+     * @param move The packed move SAN notates from the position with HASH
+     */
+    public void put(long hash, String san, int move)
+    {
+        int i = slot(hash, san);
+        hashes[i] = hash;
+        sans[i] = san;
+        moves[i] = move;
+    }
+
+    /**
+     * @param hash A position hash
+     * @param san The SAN of a move
+     * @return The slot of the pair of HASH and SAN
+     */
+    private static int slot(long hash, String san)
+    {
+        return ((int) hash ^ san.hashCode() * 0x9E3779B9) & (SIZE - 1);
+    }
+}
@@ -0,0 +1,607 @@
+import java.util.Arrays;
+
+public class Search
+{
+    /*
+    An iterative-deepening principal variation search over a private copy of a position. Each iteration searches one
+    ply deeper than the last, trying the line the last one expected first, so that almost every node after the first
+    child is refuted by a null-window search and only re-searched with the full window if it turns out better.
+    Leaves are resolved by a quiescence search of captures and promotions, so no score is taken in the middle of an
+    exchange. Moves are ordered by the previous principal variation, then captures by most valuable victim and least
+    valuable attacker, then the two killer moves of the ply, then quiet moves by their history of causing cutoffs.
+
+    Every result is stored in a transposition table, which may be shared with other searches. A position reached again
+    by another order of moves, or by the next iteration, is settled by the table if the stored result is deep enough,
+    and otherwise searches the stored best move first.
+
+    Every move buffer, killer slot, and principal variation is allocated up front, so searching allocates nothing.
+
+    Several searches of the same position sharing one table make a lazy SMP search. Each helper skips some depths, by
+    the same schedule Stockfish once used, so that at any moment the threads are spread over the next few depths
+    instead of all searching the same tree, and each finds in the table what the others have settled.
+     */
+
+    public static final int MAX_PLY = 64; // The deepest the search goes, quiescence included
+    public static final int MATE = 30000; // The score of being checkmated on the board, less one for each ply before it
+    public static final int INFINITY = 32000; // More than any score
+    public static final long NO_LIMIT = 0; // A node or time limit that is never reached
+
+    private static final int CHECK_INTERVAL = 1024; // The number of nodes between looks at the clock. A power of two.
+
+    private static final int PV_ORDER = 1 << 30; // The ordering score of the move the last iteration expected
+    private static final int CAPTURE_ORDER = 1 << 28; // The ordering score of every capture or promotion, before MVV-LVA
+    private static final int KILLER_ORDER = 1 << 27; // The ordering score of the older killer move. The newer is one more.
+    private static final int HISTORY_MAX = 1 << 20; // The history score at which every history score is halved
+
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4}; // The length of the runs of depths each helper alternately searches and skips
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7}; // How far each helper's runs are offset
+
+    private final Position position; // The position searched, a copy of the one given
+    private final TranspositionTable table; // The results of this search and any others sharing the table
+    private final int[][] moves; // The packed legal moves of each ply
+    private final int[][] order; // The ordering score of each move in MOVES
+    private final int[][] killers; // The two most recent quiet moves that caused a cutoff at each ply, newest first
+    private final int[][] history; // How often a quiet move of each piece to each square has caused a cutoff, by depth
+    private final int[][] pv; // The principal variation from each ply, as found by the current iteration
+    private final int[] pvLength; // The ply at which the principal variation from each ply ends
+    private int[] lastPV; // The principal variation of the last completed iteration
+
+    private long nodes; // The number of positions visited in this search
+    private long nodeLimit; // The number of nodes after which to stop, or NO_LIMIT
+    private long deadline; // The System.nanoTime() after which to stop
+    private boolean stopped; // True once a limit has been reached, false otherwise
+    private volatile boolean stopRequested; // True once stop() has been called, false otherwise
+
+    /**
+     * Creates a searcher of a copy of P with a table of its own. P itself is never touched, so it may keep changing
+     * during a search.
+     *
+     * @param p A position
+     * @see #Search(Position, TranspositionTable)
+     */
+    public Search(Position p)
+    {
+        this(p, new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * Creates a searcher of a copy of P that stores its results in TABLE. P itself is never touched, so it may keep
+     * changing during a search.
+     *
+     * @param p A position
+     * @param table A transposition table, which other searches may be using at the same time
+     * @see Position#Position(Position)
+     */
+    public Search(Position p, TranspositionTable table)
+    {
+        position = new Position(p);
+        this.table = table;
+        moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        order = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];
+        killers = new int[MAX_PLY + 1][2];
+        history = new int[12][64];
+        pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+        pvLength = new int[MAX_PLY + 1];
+        lastPV = new int[0];
+    }
+
+    /**
+     * Searches one ply deeper at a time until MAXDEPTH, NODELIMIT nodes, or MILLIS milliseconds are reached, or
+     * stop() is called. Only completed iterations count, except that the first always yields some move.
+     *
+     * @param maxDepth The deepest iteration to search, at most MAX_PLY
+     * @param nodeLimit The number of nodes after which to stop, or NO_LIMIT
+     * @param millis The number of milliseconds after which to stop, or NO_LIMIT
+     * @return The best move, its score, and the line expected after it, from the deepest iteration completed
+     */
+    public SearchResult search(int maxDepth, long nodeLimit, long millis)
+    {
+        reset();
+        table.newSearch();
+        return search(maxDepth, nodeLimit, millis, 0);
+    }
+
+    /**
+     * Searches as search(int, long, long) does, except that HELPER other than 0 skips some depths, and that the table
+     * is not told a new search has started. For the threads of a parallel search, which are all started by the same
+     * call to TranspositionTable.newSearch().
+     *
+     * @param maxDepth The deepest iteration to search, at most MAX_PLY
+     * @param nodeLimit The number of nodes after which to stop, or NO_LIMIT
+     * @param millis The number of milliseconds after which to stop, or NO_LIMIT
+     * @param helper 0 to search every depth, or the number of the helper thread, from 1, to skip depths by
+     * @return The best move, its score, and the line expected after it, from the deepest iteration completed
+     * @see #search(int, long, long)
+     * @see ParallelSearch
+     */
+    protected SearchResult search(int maxDepth, long nodeLimit, long millis, int helper)
+    {
+        long start = System.nanoTime();
+        this.nodeLimit = nodeLimit;
+        deadline = millis == NO_LIMIT ? Long.MAX_VALUE : start + millis * 1_000_000;
+        nodes = 0;
+        stopped = false;
+        lastPV = new int[0];
+        for (int[] k : killers)
+        {
+            Arrays.fill(k, PackedMove.NONE);
+        }
+        for (int[] h : history)
+        {
+            Arrays.fill(h, 0);
+        }
+
+        int score = 0;
+        int depth = 0;
+        for (int d = 1; d <= Math.min(maxDepth, MAX_PLY); d++)
+        {
+            if (skips(helper, d))
+            {
+                continue;
+            }
+            int s = search(d, 0, -INFINITY, INFINITY, true);
+
+            // An interrupted iteration is only trusted if there is nothing better, and has at least found a move
+            if (stopped && (depth > 0 || pvLength[0] == 0))
+            {
+                break;
+            }
+            score = s;
+            depth = d;
+            lastPV = Arrays.copyOf(pv[0], pvLength[0]);
+            if (stopped || lastPV.length == 0 || Math.abs(score) > MATE - MAX_PLY && MATE - Math.abs(score) <= d)
+            {
+                break;
+            }
+        }
+
+        // With no move at all, the game is over
+        if (lastPV.length == 0)
+        {
+            int n = MoveGenerator.generateLegalMoves(position, moves[0]);
+            if (n == 0)
+            {
+                score = MoveGenerator.checkers(position) != 0 ? -MATE : 0;
+            }
+            else
+            {
+                lastPV = new int[]{moves[0][0]};
+            }
+        }
+
+        long millisTaken = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(lastPV.length == 0 ? PackedMove.NONE : lastPV[0], score, depth, nodes, millisTaken, notate(lastPV));
+    }
+
+    /**
+     * Makes the search in progress, possibly on another thread, return as soon as it can with what it has
+     */
+    public void stop()
+    {
+        stopRequested = true;
+    }
+
+    /**
+     * Forgets any earlier call to stop(). Called before a search starts on another thread, so that a stop() made before
+     * that thread gets going is not lost.
+     */
+    protected void reset()
+    {
+        stopRequested = false;
+    }
+
+    /**
+     * @param helper 0, or the number of a helper thread from 1
+     * @param depth The depth of an iteration
+     * @return True if HELPER leaves the iteration at DEPTH to the other threads, false otherwise
+     */
+    private static boolean skips(int helper, int depth)
+    {
+        if (helper == 0)
+        {
+            return false;
+        }
+        int i = (helper - 1) % SKIP_SIZE.length;
+        return (depth + SKIP_PHASE[i]) / SKIP_SIZE[i] % 2 != 0;
+    }
+
+    /**
+     * Searches the position to DEPTH plies, plus one more for each check, then resolves the leaves in quiescence
+     *
+     * @param depth The number of plies left to search
+     * @param ply The number of plies from the root
+     * @param alpha The score the side to move is already sure of
+     * @param beta The score above which the other side would not allow this position
+     * @param followPV True if every move from the root so far is the one the last iteration expected, so the next one
+     * is tried first instead of the move from the table
+     * @return The score of the position for the side to move, fail-soft
+     */
+    private int search(int depth, int ply, int alpha, int beta, boolean followPV)
+    {
+        pvLength[ply] = ply;
+        if (ply > 0 && isDraw())
+        {
+            return 0;
+        }
+
+        boolean inCheck = MoveGenerator.checkers(position) != 0;
+        if (inCheck && ply < MAX_PLY)
+        {
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY)
+        {
+            return quiesce(ply, alpha, beta);
+        }
+
+        // A stored result settles the position if it is deep enough and its bound says enough, except on the principal
+        // variation, which is searched out in full so it can be followed
+        long hash = position.getHash();
+        long entry = table.probe(hash);
+        int hashMove = PackedMove.NONE;
+        if (entry != TranspositionTable.MISS)
+        {
+            hashMove = TranspositionTable.move(entry);
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth)
+            {
+                int score = TranspositionTable.score(entry, ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && score >= beta || bound == TranspositionTable.UPPER && score <= alpha)
+                {
+                    return score;
+                }
+            }
+        }
+
+        countNode();
+        int[] list = moves[ply];
+        int n = MoveGenerator.generateLegalMoves(position, list);
+        if (n == 0)
+        {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        int pvMove = followPV && ply < lastPV.length ? lastPV[ply] : hashMove;
+        orderMoves(ply, n, pvMove);
+
+        int originalAlpha = alpha;
+        int bestMove = PackedMove.NONE;
+        int best = -INFINITY;
+        for (int i = 0; i < n; i++)
+        {
+            int move = pickMove(ply, i, n);
+            boolean onPV = pvMove != PackedMove.NONE && PackedMove.same(move, pvMove);
+
+            position.makeMove(move);
+            int score;
+            if (i == 0)
+            {
+                score = -search(depth - 1, ply + 1, -beta, -alpha, onPV);
+            }
+            else
+            {
+                // Prove the move no better than the best so far with a null window, and only search it fully if not
+                score = -search(depth - 1, ply + 1, -alpha - 1, -alpha, false);
+                if (score > alpha && score < beta)
+                {
+                    score = -search(depth - 1, ply + 1, -beta, -alpha, false);
+                }
+            }
+            position.unmakeMove();
+
+            if (stopped)
+            {
+                return 0;
+            }
+            if (score > best)
+            {
+                best = score;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    bestMove = move;
+                    updatePV(ply, move);
+                    if (alpha >= beta)
+                    {
+                        if (!isTactical(move))
+                        {
+                            storeKiller(ply, move);
+                            storeHistory(move, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(hash, bestMove, best, depth, bound, ply);
+        return best;
+    }
+
+    /**
+     * Searches only captures and promotions, or every evasion when in check, until the position is quiet. The side to
+     * move may stand pat on the static evaluation instead of making a bad capture.
+     *
+     * @param ply The number of plies from the root
+     * @param alpha The score the side to move is already sure of
+     * @param beta The score above which the other side would not allow this position
+     * @return The score of the position for the side to move, fail-soft
+     * @see Evaluation#evaluate(Position)
+     */
+    private int quiesce(int ply, int alpha, int beta)
+    {
+        countNode();
+        if (ply >= MAX_PLY)
+        {
+            return Evaluation.evaluate(position);
+        }
+
+        boolean inCheck = MoveGenerator.checkers(position) != 0;
+        int best = -INFINITY;
+        if (!inCheck)
+        {
+            best = Evaluation.evaluate(position);
+            if (best >= beta)
+            {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+        }
+
+        int[] list = moves[ply];
+        int n = MoveGenerator.generateLegalMoves(position, list);
+        if (n == 0)
+        {
+            return inCheck ? -MATE + ply : 0;
+        }
+
+        orderMoves(ply, n, PackedMove.NONE);
+        for (int i = 0; i < n; i++)
+        {
+            int move = pickMove(ply, i, n);
+
+            // Captures and promotions sort first, so once a quiet move comes up there are no more to search
+            if (!inCheck && !isTactical(move))
+            {
+                break;
+            }
+
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove();
+
+            if (stopped)
+            {
+                return 0;
+            }
+            if (score > best)
+            {
+                best = score;
+                if (score > alpha)
+                {
+                    alpha = score;
+                    if (alpha >= beta)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts a node, and stops the search if it has reached its node limit, run out of time, or been asked to stop
+     */
+    private void countNode()
+    {
+        nodes++;
+        if (nodeLimit != NO_LIMIT && nodes >= nodeLimit)
+        {
+            stopped = true;
+        }
+        else if ((nodes & (CHECK_INTERVAL - 1)) == 0 && (stopRequested || System.nanoTime() >= deadline))
+        {
+            stopped = true;
+        }
+    }
+
+    /**
+     * @return True if the position is drawn by the fifty-move rule or has occurred before since the last pawn move or
+     * capture, false otherwise. A single repetition is enough, since whatever was best the first time still is.
+     */
+    private boolean isDraw()
+    {
+        int halfmoves = position.getHalfmoves();
+        if (halfmoves >= 100)
+        {
+            return true;
+        }
+        long hash = position.getHash();
+        int window = Math.min(halfmoves, position.getPly());
+        for (int i = 4; i <= window; i += 2)
+        {
+            if (position.getHash(i) == hash)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives each of the N moves of PLY its ordering score
+     *
+     * @param ply The number of plies from the root
+     * @param n The number of moves in MOVES[PLY]
+     * @param pvMove The move the last iteration expected here, or PackedMove.NONE
+     */
+    private void orderMoves(int ply, int n, int pvMove)
+    {
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        for (int i = 0; i < n; i++)
+        {
+            int move = list[i];
+            if (pvMove != PackedMove.NONE && PackedMove.same(move, pvMove))
+            {
+                scores[i] = PV_ORDER;
+            }
+            else if (isTactical(move))
+            {
+                // Most valuable victim, then least valuable attacker, with promotions as if capturing what they become
+                int victim = PackedMove.is(move, PackedMove.EN_PASSANT) ? Position.PAWN : Position.typeOf(position.getPiece(PackedMove.to(move)));
+                int value = victim == Position.EMPTY ? 0 : Evaluation.VALUES[victim];
+                int promotion = PackedMove.promotion(move);
+                if (promotion != Position.EMPTY)
+                {
+                    value += Evaluation.VALUES[promotion];
+                }
+                scores[i] = CAPTURE_ORDER + value * 8 - PackedMove.type(move);
+            }
+            else if (move == killers[ply][0])
+            {
+                scores[i] = KILLER_ORDER + 1;
+            }
+            else if (move == killers[ply][1])
+            {
+                scores[i] = KILLER_ORDER;
+            }
+            else
+            {
+                scores[i] = history[PackedMove.piece(move)][PackedMove.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Swaps the best-ordered of the moves of PLY from I on into I, so the moves are sorted only as far as they are used
+     *
+     * @param ply The number of plies from the root
+     * @param i The index of the next move to search
+     * @param n The number of moves in MOVES[PLY]
+     * @return The move now at I
+     */
+    private int pickMove(int ply, int i, int n)
+    {
+        int[] list = moves[ply];
+        int[] scores = order[ply];
+        int best = i;
+        for (int j = i + 1; j < n; j++)
+        {
+            if (scores[j] > scores[best])
+            {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    /**
+     * @param move A packed move
+     * @return True if MOVE is a capture or a promotion, false otherwise
+     */
+    private static boolean isTactical(int move)
+    {
+        return PackedMove.is(move, PackedMove.CAPTURE) || PackedMove.promotion(move) != Position.EMPTY;
+    }
+
+    /**
+     * Makes MOVE the newest killer of PLY
+     *
+     * @param ply The number of plies from the root
+     * @param move A quiet move that caused a cutoff
+     */
+    private void storeKiller(int ply, int move)
+    {
+        if (killers[ply][0] != move)
+        {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+    }
+
+    /**
+     * Credits MOVE with a cutoff at DEPTH, deeper ones counting for more, and halves every history score if it grows
+     * too large to stay below the killers
+     *
+     * @param move A quiet move that caused a cutoff
+     * @param depth The number of plies that were left to search
+     */
+    private void storeHistory(int move, int depth)
+    {
+        int[] h = history[PackedMove.piece(move)];
+        int to = PackedMove.to(move);
+        h[to] += depth * depth;
+        if (h[to] >= HISTORY_MAX)
+        {
+            for (int[] row : history)
+            {
+                for (int sq = 0; sq < 64; sq++)
+                {
+                    row[sq] /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the principal variation from PLY be MOVE followed by the principal variation from the ply after
+     *
+     * @param ply The number of plies from the root
+     * @param move The new best move at PLY
+     */
+    private void updatePV(int ply, int move)
+    {
+        pv[ply][ply] = move;
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, pvLength[ply + 1] - ply - 1);
+        pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+    }
+
+    /**
+     * Plays LINE through on a copy of the position, marking each move for disambiguation, check, and checkmate, so it
+     * can be written in SAN once the position is gone
+     *
+     * @param line Legal packed moves from the root
+     * @return LINE, notated
+     * @see PackedMove#toSAN(int)
+     */
+    private int[] notate(int[] line)
+    {
+        Position p = new Position(position);
+        int[] list = new int[MoveGenerator.MAX_MOVES];
+        int[] ret = new int[line.length];
+        for (int i = 0; i < line.length; i++)
+        {
+            int n = MoveGenerator.generateLegalMoves(p, list);
+            MoveGenerator.markDisambiguation(list, n);
+            int move = line[i];
+            for (int j = 0; j < n; j++)
+            {
+                if (PackedMove.same(list[j], line[i]))
+                {
+                    move = list[j];
+                    break;
+                }
+            }
+            p.makeMove(move);
+            if (MoveGenerator.checkers(p) != 0)
+            {
+                move |= PackedMove.CHECK;
+                if (MoveGenerator.generateLegalMoves(p, list) == 0)
+                {
+                    move |= PackedMove.CHECKMATE;
+                }
+            }
+            ret[i] = move;
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,120 @@
+public final class SearchResult
+{
+    private final int move; // The best packed move found, or PackedMove.NONE if there are no legal moves
+    private final int score; // The score of MOVE in centipawns for the side to move, or a mate score
+    private final int depth; // The deepest iteration completed
+    private final long nodes; // The number of positions visited
+    private final long millis; // The time the search took
+    private final int[] pv; // The line the search expects, starting with MOVE
+
+    /**
+     * The outcome of a search. Mate scores are Search.MATE less the number of plies to the mate, negated if the side to
+     * move is the one getting mated.
+     *
+     * @param move The best packed move found, or PackedMove.NONE if there are no legal moves
+     * @param score The score of MOVE in centipawns for the side to move, or a mate score
+     * @param depth The deepest iteration completed
+     * @param nodes The number of positions visited
+     * @param millis The time the search took
+     * @param pv The line the search expects, starting with MOVE. Copied.
+     * @see Search#search(int, long, long)
+     */
+    public SearchResult(int move, int score, int depth, long nodes, long millis, int[] pv)
+    {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+        this.pv = pv.clone();
+    }
+
+    /**
+     * @return The best packed move found, or PackedMove.NONE if there are no legal moves
+     */
+    public int getMove()
+    {
+        return move;
+    }
+
+    /**
+     * @return The score of the best move in centipawns for the side to move, or a mate score
+     */
+    public int getScore()
+    {
+        return score;
+    }
+
+    /**
+     * @return True if the score is a forced mate for either side, false otherwise
+     */
+    public boolean isMate()
+    {
+        return Math.abs(score) > Search.MATE - Search.MAX_PLY;
+    }
+
+    /**
+     * @return The deepest iteration completed
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The number of positions visited
+     */
+    public long getNodes()
+    {
+        return nodes;
+    }
+
+    /**
+     * @return The time the search took in milliseconds
+     */
+    public long getMillis()
+    {
+        return millis;
+    }
+
+    /**
+     * @return The number of positions visited per second
+     */
+    public long getNodesPerSecond()
+    {
+        return nodes * 1000 / Math.max(millis, 1);
+    }
+
+    /**
+     * @return The line the search expects, as packed moves starting with the best move
+     */
+    public int[] getPV()
+    {
+        return pv.clone();
+    }
+
+    /**
+     * @return The depth, score, node count, speed, and expected line, as a UCI info line would give them
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append("depth ").append(depth).append(" score ");
+        if (isMate())
+        {
+            int plies = Search.MATE - Math.abs(score);
+            sb.append("mate ").append(score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+        }
+        else
+        {
+            sb.append("cp ").append(score);
+        }
+        sb.append(" nodes ").append(nodes).append(" nps ").append(getNodesPerSecond()).append(" time ").append(millis).append(" pv");
+        for (int m : pv)
+        {
+            sb.append(' ').append(PackedMove.toSAN(m));
+        }
+        return sb.toString();
+    }
+}
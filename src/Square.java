@@ -13,6 +13,7 @@ public class Square
     private int fileInt; // The zero-indexed number (A -> 0, B -> 1, etc.) of the File to which the square belongs
     private Diagonal diagonal1, diagonal2; // The Diagonals to which the square belongs
     private int d1Int, d2Int; // The numbers (as counted from left to right) of the Diagonals to which the square belongs
+    private final int index; // The bitboard index of the square (a1 -> 0, b1 -> 1, ..., h8 -> 63)
 
     /**
      * Throws an InvalidSquareException if SAN is not a valid square notation.
@@ -28,6 +29,7 @@ public class Square
             this.san = san.toLowerCase();
             man = null;
             board = b;
+            index = Bitboard.square(this.san.charAt(0) - 'a', this.san.charAt(1) - '1');
         }
         else
         {
@@ -355,4 +357,12 @@ public class Square
     {
         return fileInt;
     }
+
+    /**
+     * @return The bitboard index of the square (a1 -> 0, b1 -> 1, ..., h8 -> 63)
+     */
+    public int getIndex()
+    {
+        return index;
+    }
 }
@@ -1,9 +1,9 @@
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Scanner;
 
 public class TestStuff
 {
-    public static void main(String[] args) throws FileNotFoundException, InvalidPGNException, TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException, InvalidFENException
+    public static void main(String[] args) throws IOException, InvalidPGNException, TooManyKingsException, InvalidMoveException, InvalidSquareException, InvalidPieceException, InvalidFENException
     {
         // playAndPrintGame(new String[] {"e4", "e5", "Nf3", "Nf6", "Nxe5", "Nc6", "Nxc6", "dxc6", "Be2", "Bc5", "O-O", "h5", "Nc3", "Ng4", "Qe1", "Qh4", "Bxg4", "hxg4", "h3", "gxh3", "d4", "Qg4", "g3"});
         VisualOpeningPractice.practice();
@@ -0,0 +1,257 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public class TranspositionTable
+{
+    /*
+    A fixed-size hash table of search results, shared by any number of search threads with no locks. The whole table is
+    one long[]. Entries are grouped four to a bucket of eight longs, one 64-byte cache line, and a position may be
+    stored in any entry of the bucket its hash picks. Each entry is two longs: the data, and the position hash XOR-ed
+    with the data. Another thread may write either half at any time, so a reader only trusts an entry if the two
+    halves still XOR to the hash it is looking for. A torn entry, half one write and half another, fails that check and
+    reads as a miss, as does an entry for another position. Each long is read and written in one atomic access through
+    a VarHandle, which is all the synchronization there is.
+
+    The data packs, from bit 0: the move (23 bits, the packed move without its notation flags), the score (16 bits,
+    signed), the depth (8 bits), the bound (2 bits), and the number of the search that stored it (8 bits, wrapping).
+    Every bound is nonzero, so no stored data is 0, and 0 can mean a miss.
+     */
+
+    public static final int LOWER = 1; // The true score is at least the score, since the search failed high
+    public static final int UPPER = 2; // The true score is at most the score, since the search failed low
+    public static final int EXACT = 3; // The score is the true score
+    public static final long MISS = 0; // The data of a probe that found nothing
+
+    public static final int DEFAULT_MEGABYTES = 16; // The size of a table when none is asked for
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int BUCKET_ENTRIES = 4; // The number of entries in a bucket
+    private static final int BUCKET_LONGS = BUCKET_ENTRIES * 2; // The number of longs in a bucket
+
+    private static final int MOVE_BITS = 23;
+    private static final int SCORE_SHIFT = 23;
+    private static final int DEPTH_SHIFT = 39;
+    private static final int BOUND_SHIFT = 47;
+    private static final int AGE_SHIFT = 49;
+
+    private final long[] slots; // Every bucket, one after another
+    private final long bucketMask; // The number of buckets less one, which is a power of two
+    private volatile int age; // The number of the current search, modulo 256
+
+    /**
+     * Creates an empty table of the largest power of two of buckets that fits in MEGABYTES
+     *
+     * @param megabytes The most memory the table may take, at least 1
+     */
+    public TranspositionTable(int megabytes)
+    {
+        long buckets = Long.highestOneBit(Math.max(megabytes, 1) * (1L << 20) / (BUCKET_LONGS * Long.BYTES));
+        slots = new long[(int) Math.min(buckets * BUCKET_LONGS, Integer.highestOneBit(Integer.MAX_VALUE))];
+        bucketMask = slots.length / BUCKET_LONGS - 1;
+        age = 0;
+    }
+
+    /**
+     * Empties the table. Not to be called while a search is using it.
+     */
+    public void clear()
+    {
+        Arrays.fill(slots, 0);
+        age = 0;
+    }
+
+    /**
+     * Starts a new search, so that entries from older ones are replaced first
+     */
+    public void newSearch()
+    {
+        age = age + 1 & 0xFF;
+    }
+
+    /**
+     * @param key A position hash
+     * @return The data stored for KEY, or MISS
+     */
+    public long probe(long key)
+    {
+        int bucket = bucketOf(key);
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2)
+        {
+            long data = (long) SLOTS.getOpaque(slots, i + 1);
+            if (data != MISS && ((long) SLOTS.getOpaque(slots, i) ^ data) == key)
+            {
+                return data;
+            }
+        }
+        return MISS;
+    }
+
+    /**
+     * Stores a search result for KEY. It replaces the entry for KEY if there is one, unless that entry is from this
+     * search and deeper, and the move is then kept if there is no new one. Otherwise it replaces whichever entry of the
+     * bucket is from the oldest search, the shallowest breaking ties.
+     *
+     * @param key A position hash
+     * @param move The best packed move found, or PackedMove.NONE
+     * @param score The score of the position at PLY, as the search returned it
+     * @param depth The number of plies that were searched
+     * @param bound LOWER, UPPER, or EXACT
+     * @param ply The number of plies from the root, to store mate scores relative to the position instead
+     */
+    public void store(long key, int move, int score, int depth, int bound, int ply)
+    {
+        int bucket = bucketOf(key);
+        int current = age;
+        int victim = bucket;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + BUCKET_LONGS; i += 2)
+        {
+            long data = (long) SLOTS.getOpaque(slots, i + 1);
+            if (data == MISS)
+            {
+                victim = i;
+                break;
+            }
+            if (((long) SLOTS.getOpaque(slots, i) ^ data) == key)
+            {
+                if (ageOf(data) == current && depth(data) > depth && bound != EXACT)
+                {
+                    return;
+                }
+                if (move == PackedMove.NONE)
+                {
+                    move = move(data);
+                }
+                victim = i;
+                break;
+            }
+
+            // Each search older counts as much as four plies shallower
+            int worth = depth(data) - 4 * (current - ageOf(data) & 0xFF);
+            if (worth < victimWorth)
+            {
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+
+        long data = move & ((1L << MOVE_BITS) - 1)
+                | (toStored(score, ply) & 0xFFFFL) << SCORE_SHIFT
+                | (long) Math.max(Math.min(depth, 0xFF), 0) << DEPTH_SHIFT
+                | (long) bound << BOUND_SHIFT
+                | (long) current << AGE_SHIFT;
+        SLOTS.setOpaque(slots, victim, key ^ data);
+        SLOTS.setOpaque(slots, victim + 1, data);
+    }
+
+    /**
+     * @return The permille of a sample of entries that were stored by the current search
+     */
+    public int hashfull()
+    {
+        int current = age;
+        int used = 0;
+        int sample = Math.min(1000, slots.length / 2);
+        for (int i = 0; i < sample; i++)
+        {
+            long data = (long) SLOTS.getOpaque(slots, 2 * i + 1);
+            if (data != MISS && ageOf(data) == current)
+            {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    /**
+     * @return The size of the table in bytes
+     */
+    public long size()
+    {
+        return (long) slots.length * Long.BYTES;
+    }
+
+    /**
+     * @param data The data of a probe that hit
+     * @return The stored packed move, without notation flags, or PackedMove.NONE
+     */
+    public static int move(long data)
+    {
+        return (int) (data & ((1L << MOVE_BITS) - 1));
+    }
+
+    /**
+     * @param data The data of a probe that hit
+     * @param ply The number of plies from the root of the probing search
+     * @return The stored score, with mate scores counted from the root again
+     */
+    public static int score(long data, int ply)
+    {
+        int score = (short) (data >>> SCORE_SHIFT);
+        if (score > Search.MATE - Search.MAX_PLY)
+        {
+            return score - ply;
+        }
+        if (score < -Search.MATE + Search.MAX_PLY)
+        {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * @param data The data of a probe that hit
+     * @return The number of plies that were searched
+     */
+    public static int depth(long data)
+    {
+        return (int) (data >>> DEPTH_SHIFT & 0xFF);
+    }
+
+    /**
+     * @param data The data of a probe that hit
+     * @return LOWER, UPPER, or EXACT
+     */
+    public static int bound(long data)
+    {
+        return (int) (data >>> BOUND_SHIFT & 0x3);
+    }
+
+    /**
+     * @param data The data of an entry
+     * @return The number of the search that stored it, modulo 256
+     */
+    private static int ageOf(long data)
+    {
+        return (int) (data >>> AGE_SHIFT & 0xFF);
+    }
+
+    /**
+     * @param score A score at PLY plies from the root
+     * @param ply The number of plies from the root
+     * @return SCORE with mate scores counted from the position instead of from the root
+     */
+    private static int toStored(int score, int ply)
+    {
+        if (score > Search.MATE - Search.MAX_PLY)
+        {
+            return score + ply;
+        }
+        if (score < -Search.MATE + Search.MAX_PLY)
+        {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /**
+     * @param key A position hash
+     * @return The index of the first long of the bucket of KEY
+     */
+    private int bucketOf(long key)
+    {
+        return (int) (key & bucketMask) * BUCKET_LONGS;
+    }
+}
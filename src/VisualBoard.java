@@ -335,7 +335,7 @@ public class VisualBoard extends JPanel
 
         if (m.isEnPassant())
         {
-            getVisualSquare((m.getPiece().getColor() == Side.WHITE ? to.getSouthSquare() : to.getNorthSquare()).toString()).setUnselectedIcon();
+            getVisualSquare((m.getMoverSide() == Side.WHITE ? to.getSouthSquare() : to.getNorthSquare()).toString()).setUnselectedIcon();
         }
         else if (m.getCastle() == Castle.KING)
         {
@@ -22,6 +22,8 @@ public class VisualOpeningPractice
         int[] moveTime = {200};
         int[] tpm = {3};
         int[] numReveals = {3};
+        int[] thinkTime = {1000};
+        int[] threads = {Runtime.getRuntime().availableProcessors()};
 
         JFrame optionFrame = new JFrame();
         optionFrame.setLayout(new BoxLayout(optionFrame.getContentPane(), BoxLayout.Y_AXIS));
@@ -90,7 +92,7 @@ public class VisualOpeningPractice
             public void actionPerformed(ActionEvent e) {
                 JFrame frame = new JFrame();
                 JFileChooser fc = new JFileChooser(".");
-                fc.setFileFilter(new FileNameExtensionFilter("PGNs", "pgn"));
+                fc.setFileFilter(new FileNameExtensionFilter("PGNs and repertoires", "pgn", "rep"));
                 frame.add(fc);
                 int r = fc.showOpenDialog(null);
                 if (r == JFileChooser.APPROVE_OPTION)
@@ -121,11 +123,13 @@ public class VisualOpeningPractice
             {
                 JPanel morePanel = new JPanel();
 
-                morePanel.setLayout(new GridLayout(3, 2));
+                morePanel.setLayout(new GridLayout(5, 2));
 
                 SpinnerNumberModel timeModel = new SpinnerNumberModel(moveTime[0], 1, 9999, 1);
                 SpinnerNumberModel tpmModel = new SpinnerNumberModel(tpm[0], -1, 99, 1);
                 SpinnerNumberModel revealsModel = new SpinnerNumberModel(numReveals[0], -1, 99, 1);
+                SpinnerNumberModel thinkModel = new SpinnerNumberModel(thinkTime[0], 1, 99999, 100);
+                SpinnerNumberModel threadsModel = new SpinnerNumberModel(threads[0], 1, 256, 1);
 
                 JLabel moveTimeLabel = new JLabel("Computer move time (ms)");
                 morePanel.add(moveTimeLabel);
@@ -142,18 +146,32 @@ public class VisualOpeningPractice
                 JSpinner numRevealsSpinner = new JSpinner(revealsModel);
                 morePanel.add(numRevealsSpinner);
 
+                JLabel thinkTimeLabel = new JLabel("Computer think time after the line (ms)");
+                morePanel.add(thinkTimeLabel);
+                JSpinner thinkTimeSpinner = new JSpinner(thinkModel);
+                morePanel.add(thinkTimeSpinner);
+
+                JLabel threadsLabel = new JLabel("Computer search threads");
+                morePanel.add(threadsLabel);
+                JSpinner threadsSpinner = new JSpinner(threadsModel);
+                morePanel.add(threadsSpinner);
+
                 int moreQ = JOptionPane.showOptionDialog(null, morePanel, "More Options", JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, null, null);
                 if (moreQ == 0)
                 {
                     Object moveTimeObj = moveTimeSpinner.getValue();
                     Object tpmObj = tpmSpinner.getValue();
                     Object numRevealsObj = numRevealsSpinner.getValue();
+                    Object thinkTimeObj = thinkTimeSpinner.getValue();
+                    Object threadsObj = threadsSpinner.getValue();
 
-                    if (moveTimeObj instanceof Integer && tpmObj instanceof Integer && numRevealsObj instanceof Integer)
+                    if (moveTimeObj instanceof Integer && tpmObj instanceof Integer && numRevealsObj instanceof Integer && thinkTimeObj instanceof Integer && threadsObj instanceof Integer)
                     {
                         moveTime[0] = (Integer) moveTimeObj;
                         tpm[0] = (Integer) tpmObj;
                         numReveals[0] = (Integer) numRevealsObj;
+                        thinkTime[0] = (Integer) thinkTimeObj;
+                        threads[0] = (Integer) threadsObj;
                     }
                 }
             }
@@ -191,9 +209,27 @@ public class VisualOpeningPractice
                     try
                     {
                         assert pb != null;
-                        curr = PGNManager.convertPGNToTree(pgn[0], pb.getBoard());
+                        if (pgn[0].getName().endsWith(".rep"))
+                        {
+                            // Written from a validated tree with its transpositions collapsed, so only the lines
+                            // practiced are read
+                            curr = new Repertoire(pgn[0]).toTree();
+                        }
+                        else
+                        {
+                            curr = PGNManager.convertPGNToTree(pgn[0]);
+                            // Report every bad move now, rather than when practice happens to reach one
+                            PGNManager.validate(curr, new Board());
+                            // Drill each position the same way however it is reached
+                            PGNManager.collapseTranspositions(curr, new Board());
+                        }
                         pb.setRoot(curr);
                     }
+                    catch (InvalidPGNException ex)
+                    {
+                        JOptionPane.showMessageDialog(null, "The file you selected is invalid.\n" + ex.getMessage(), "Error: Faulty PGN File", JOptionPane.ERROR_MESSAGE);
+                        goFlag = false;
+                    }
                     catch (Exception ex)
                     {
                         JOptionPane.showMessageDialog(null, "The file you selected is somehow invalid.", "Error: Faulty PGN File", JOptionPane.ERROR_MESSAGE);
@@ -205,6 +241,8 @@ public class VisualOpeningPractice
                         pb.setMoveTime(moveTime[0]);
                         pb.setTPM(tpm[0]);
                         pb.setNumReveals(numReveals[0]);
+                        pb.setThinkTime(thinkTime[0]);
+                        pb.setThreads(threads[0]);
                         process(pb, pgn[0].getName(), optionFrame);
                     }
                 }
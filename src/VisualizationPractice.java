@@ -51,7 +51,7 @@ public class VisualizationPractice
                 {
                     curr = curr.getChild(0);
                     System.out.println(curr.getMove());
-                    b.move(new Move(curr.getMove(), b));
+                    b.move(PGNManager.toMove(curr, b));
                     JOptionPane.showMessageDialog(null, curr.getMove());
                 }
                 else